@@ -0,0 +1,54 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Interface 'BatchKernels' for whole-batch geometry loops over TriangleBatch and RectangleBatch columns.
+// The implementation is chosen at runtime: -Dshapes.kernels=scalar|vector|auto (default auto) or use()
+interface BatchKernels {
+    // Triangle kernels: areas, perimeters, squared side lengths (p1-p2, p1-p3, p2-p3) and right-angle flags
+    void triangleAreas(TriangleBatch b, double[] out);
+    void trianglePerimeters(TriangleBatch b, double[] out);
+    void triangleSquaredSides(TriangleBatch b, double[] side1, double[] side2, double[] side3);
+    int rightAngled(TriangleBatch b, boolean[] out);
+
+    // Rectangle kernels: areas, perimeters, squared length (p1-p2) and width (p1-p4) and square flags
+    void rectangleAreas(RectangleBatch b, double[] out);
+    void rectanglePerimeters(RectangleBatch b, double[] out);
+    void rectangleSquaredSides(RectangleBatch b, double[] length, double[] width);
+    int squares(RectangleBatch b, boolean[] out);
+
+    // Getter method to retrieve the kernels currently used by the batches
+    static BatchKernels current() {
+        return Selected.kernels;
+    }
+
+    // Method to switch kernels at runtime: "scalar", "vector" or "auto" (vector when available)
+    static BatchKernels use(String mode) {
+        BatchKernels kernels = load(mode);
+        Selected.kernels = kernels;
+        return kernels;
+    }
+
+    // Helper loading the kernels for a mode; the Vector API class is only touched reflectively,
+    // so the rest of the tree neither compiles nor runs against jdk.incubator.vector
+    static BatchKernels load(String mode) {
+        if (!mode.equals("scalar") && !mode.equals("auto") && !mode.equals("vector"))
+            throw new IllegalArgumentException("Unknown kernels: " + mode);
+        if (!mode.equals("scalar")) {
+            try {
+                return (BatchKernels) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                if (mode.equals("vector"))
+                    throw new IllegalStateException("Vector kernels unavailable; run with --add-modules jdk.incubator.vector", e);
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    // Holder for the selected kernels, initialised from the shapes.kernels system property
+    final class Selected {
+        static volatile BatchKernels kernels = load(System.getProperty("shapes.kernels", "auto"));
+
+        private Selected() {
+        }
+    }
+}
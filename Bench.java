@@ -0,0 +1,279 @@
+// Importing necessary Java libraries
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Class 'Bench' timing shape operations with warm-up, repeated measurement and GC/allocation profiling.
+// Each ShapesN variant runs its own suite with "java ShapesN bench [sizes...]" in a JVM of its own.
+// Within a suite, sum() and count() run every benchmark in a freshly loaded copy of their loop, so the
+// type profile of one benchmark's call site cannot leak into the next; -Dbench.filter=<substring> picks
+// single benchmarks
+class Bench {
+    // Result sink so the JIT cannot discard the measured work
+    static volatile double sink;
+
+    private static final String FILTER = System.getProperty("bench.filter", "");
+    private static final int WARMUPS = Integer.getInteger("bench.warmups", 5);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 10);
+    private static final long ITERATION_NANOS = Long.getLong("bench.iterationMillis", 200L) * 1_000_000L;
+
+    private final String variant;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    // Constructor to create a harness reporting results under the given variant name
+    public Bench(String variant) {
+        this.variant = variant;
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) bean : null;
+        System.out.printf("%-10s %-38s %11s %12s %10s %12s %8s %8s%n",
+                "variant", "benchmark", "shapes", "ns/shape", "error", "bytes/shape", "gc", "gc ms");
+    }
+
+    // Method to time 'op', which processes 'shapes' shapes per call, and print one result line
+    public void run(String name, int shapes, DoubleSupplier op) {
+        measure(name, shapes, budget -> iteration(op, budget));
+    }
+
+    // Helper timing 'iteration', which calls the measured operation for the given number of nanoseconds
+    // and returns how many calls it made, and printing one result line
+    private void measure(String name, int shapes, LongUnaryOperator iteration) {
+        if (!name.contains(FILTER))
+            return;
+        for (int w = 0; w < WARMUPS; w++) {
+            iteration.applyAsLong(ITERATION_NANOS);
+        }
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long allocated = allocatedBytes();
+        long totalCalls = 0;
+        double[] nanosPerShape = new double[ITERATIONS];
+        for (int m = 0; m < ITERATIONS; m++) {
+            long start = System.nanoTime();
+            long calls = iteration.applyAsLong(ITERATION_NANOS);
+            long elapsed = System.nanoTime() - start;
+            nanosPerShape[m] = (double) elapsed / calls / Math.max(shapes, 1);
+            totalCalls += calls;
+        }
+        double bytesPerShape = allocated < 0 ? Double.NaN
+                : (double) (allocatedBytes() - allocated) / totalCalls / Math.max(shapes, 1);
+
+        double mean = 0;
+        for (double v : nanosPerShape) {
+            mean += v;
+        }
+        mean /= ITERATIONS;
+        double variance = 0;
+        for (double v : nanosPerShape) {
+            variance += (v - mean) * (v - mean);
+        }
+        double error = ITERATIONS > 1 ? Math.sqrt(variance / (ITERATIONS - 1)) : 0;
+        System.out.printf("%-10s %-38s %11d %12.3f %10.3f %12.2f %8d %8d%n", variant, name, shapes,
+                mean, error, bytesPerShape, gcCount() - gcCount, gcMillis() - gcMillis);
+    }
+
+    // Method to time 'op' over every shape in 'shapes', e.g. bench.sum("Rectangle.getArea", rectangles,
+    // Rectangle::getArea). The shape call sits in the lambda, so its receiver profile is the array's own,
+    // and the loop calling the lambda is a copy of Loop used by this benchmark only
+    public <T> void sum(String name, T[] shapes, ToDoubleFunction<? super T> op) {
+        if (name.contains(FILTER))
+            measure(name, shapes.length, copyLoop(shapes, op, null));
+    }
+
+    // Method to time 'test' over every shape in 'shapes', e.g. Rectangle::isSquare, counting the matches
+    public <T> void count(String name, T[] shapes, Predicate<? super T> test) {
+        if (name.contains(FILTER))
+            measure(name, shapes.length, copyLoop(shapes, null, test));
+    }
+
+    // Helper calling 'op' repeatedly for 'budget' nanoseconds, returning the number of calls
+    private static long iteration(DoubleSupplier op, long budget) {
+        long calls = 0;
+        double result = 0;
+        long start = System.nanoTime();
+        do {
+            result += op.getAsDouble();
+            calls++;
+        } while (System.nanoTime() - start < budget);
+        sink = result;
+        return calls;
+    }
+
+    // Helper defining a new copy of Loop from its class file and creating one for a sum or count. Every
+    // copy is a class of its own to the JIT, with its own type profiles, so benchmarks never share the
+    // call site inside the loop and a monomorphic benchmark stays monomorphic whatever ran before it
+    private static LongUnaryOperator copyLoop(Object[] shapes, ToDoubleFunction<?> op, Predicate<?> test) {
+        String name = Loop.class.getName();
+        try (InputStream in = Loop.class.getResourceAsStream("/" + name.replace('.', '/') + ".class")) {
+            if (in == null)
+                throw new IllegalStateException("Class file of " + name + " not found");
+            byte[] bytes = in.readAllBytes();
+            Class<?> copy = new CopyLoader(Loop.class.getClassLoader()).define(name, bytes);
+            return (LongUnaryOperator) copy
+                    .getConstructor(Object[].class, ToDoubleFunction.class, Predicate.class)
+                    .newInstance(shapes, op, test);
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot copy the benchmark loop", e);
+        }
+    }
+
+    // Class 'CopyLoader' defining one copy of the benchmark loop; everything else comes from its parent
+    private static final class CopyLoader extends ClassLoader {
+        CopyLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // Class 'Loop' running passes of a sum (when 'op' is set) or a count (when 'test' is set) over the
+    // shapes for the given number of nanoseconds and returning the number of passes. It is public and
+    // uses nothing of Bench because each copy lives in a class loader of its own
+    public static final class Loop implements LongUnaryOperator {
+        // Result sink of this copy, so the JIT cannot discard the measured work
+        public static volatile double sink;
+
+        private final Object[] shapes;
+        private final ToDoubleFunction<Object> op;
+        private final Predicate<Object> test;
+
+        public Loop(Object[] shapes, ToDoubleFunction<Object> op, Predicate<Object> test) {
+            this.shapes = shapes;
+            this.op = op;
+            this.test = test;
+        }
+
+        @Override
+        public long applyAsLong(long budget) {
+            long calls = 0;
+            double result = 0;
+            long start = System.nanoTime();
+            do {
+                result += op != null ? sum() : count();
+                calls++;
+            } while (System.nanoTime() - start < budget);
+            sink = result;
+            return calls;
+        }
+
+        private double sum() {
+            double sum = 0;
+            for (int i = 0; i < shapes.length; i++) {
+                sum += op.applyAsDouble(shapes[i]);
+            }
+            return sum;
+        }
+
+        private double count() {
+            double count = 0;
+            for (int i = 0; i < shapes.length; i++) {
+                if (test.test(shapes[i]))
+                    count++;
+            }
+            return count;
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    // Method to parse the data sizes following 'from' in 'args', e.g. "10 1000 1e6 1e8"
+    public static int[] sizes(String[] args, int from) {
+        if (args.length <= from)
+            return new int[] { 10, 1_000, 100_000, 1_000_000 };
+        int[] sizes = new int[args.length - from];
+        for (int i = from; i < args.length; i++) {
+            sizes[i - from] = (int) Double.parseDouble(args[i]);
+        }
+        return sizes;
+    }
+
+    // Method to generate 'n' axis-aligned rectangles in the {{x,y},...} format, roughly a quarter squares
+    public static int[][][] randomRectangles(int n, long seed) {
+        Random random = new Random(seed);
+        int[][][] rectanglesArray = new int[n][][];
+        for (int i = 0; i < n; i++) {
+            int x = random.nextInt(10_000);
+            int y = random.nextInt(10_000);
+            int length = 1 + random.nextInt(100);
+            int width = random.nextInt(4) == 0 ? length : 1 + random.nextInt(100);
+            rectanglesArray[i] = new int[][] { { x, y }, { x, y + length }, { x + width, y + length }, { x + width, y } };
+        }
+        return rectanglesArray;
+    }
+
+    // Method to generate 'n' triangles in the {{x,y},...} format, roughly a third right-angled
+    public static int[][][] randomTriangles(int n, long seed) {
+        Random random = new Random(seed);
+        int[][][] trianglesArray = new int[n][][];
+        for (int i = 0; i < n; i++) {
+            int x = random.nextInt(10_000);
+            int y = random.nextInt(10_000);
+            int dx = 1 + random.nextInt(100);
+            int dy = 1 + random.nextInt(100);
+            if (random.nextInt(3) == 0) {
+                trianglesArray[i] = new int[][] { { x, y }, { x + dx, y + dy }, { x - dy, y + dx } };
+            } else {
+                trianglesArray[i] = new int[][] { { x, y }, { x + dx, y + dy }, { x + random.nextInt(100), y - dx } };
+            }
+        }
+        return trianglesArray;
+    }
+
+    // Entry point benchmarking the column-oriented ShapeBatch as a baseline for the ShapesN variants
+    public static void main(String[] args) {
+        Bench bench = new Bench("Batch");
+        for (int n : sizes(args, 0)) {
+            int[][][] rectanglesArray = randomRectangles(n, 42);
+            int[][][] trianglesArray = randomTriangles(n, 43);
+            bench.run("RectangleBatch.<init>", n, () -> new RectangleBatch(rectanglesArray).size());
+            bench.run("TriangleBatch.<init>", n, () -> new TriangleBatch(trianglesArray).size());
+            RectangleBatch rectangles = new RectangleBatch(rectanglesArray);
+            TriangleBatch triangles = new TriangleBatch(trianglesArray);
+            double[] out = new double[n];
+            boolean[] flags = new boolean[n];
+            bench.run("RectangleBatch.getAreas", n, () -> {
+                rectangles.getAreas(out);
+                return out[n - 1];
+            });
+            bench.run("RectangleBatch.getPerimeters", n, () -> {
+                rectangles.getPerimeters(out);
+                return out[n - 1];
+            });
+            bench.run("RectangleBatch.isSquare", n, () -> rectangles.isSquare(flags));
+            bench.run("TriangleBatch.getAreas", n, () -> {
+                triangles.getAreas(out);
+                return out[n - 1];
+            });
+            bench.run("TriangleBatch.getPerimeters", n, () -> {
+                triangles.getPerimeters(out);
+                return out[n - 1];
+            });
+            bench.run("TriangleBatch.isRightAngled", n, () -> triangles.isRightAngled(flags));
+        }
+    }
+}
@@ -0,0 +1,328 @@
+// Importing necessary Java libraries
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.LongConsumer;
+
+// Class 'ConcurrentShapeStore' collecting triangles and rectangles from many producer threads at once
+// without locks. Every add() claims the next slot with one atomic increment, copies the coordinates into
+// a chunk of fixed-size int arrays (chunks are installed with compareAndSet the first time a slot needs
+// them, so nothing is ever copied or resized) and publishes the slot with a volatile write of its kind byte,
+// which also records whether the shape is a square or right-angled. Slots can be published out of order;
+// a shared watermark, advanced by CAS by whichever writer finds the next slot published, marks the longest
+// prefix in which every slot is complete. Readers scan up to the watermark while writers keep appending,
+// and always see fully written shapes. Per-kind totals are striped LongAdders, so counting does not make
+// producers contend on one cache line
+final class ConcurrentShapeStore {
+    // Kind bytes; 0 marks a slot that is claimed but not yet published
+    public static final byte TRIANGLE = 1;
+    public static final byte RECTANGLE = 2;
+    private static final byte KIND_MASK = 3;
+    // Set for a square rectangle or a right-angled triangle
+    private static final byte FLAGGED = 4;
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << 16;
+    public static final long CAPACITY = (long) MAX_CHUNKS * CHUNK_SIZE;
+    // Every slot has room for four {x,y} pairs; triangles leave the last pair unused
+    private static final int STRIDE = 8;
+
+    private static final VarHandle KINDS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final LongAdder triangles = new LongAdder();
+    private final LongAdder rectangles = new LongAdder();
+    private final LongAdder squares = new LongAdder();
+    private final LongAdder rightAngled = new LongAdder();
+
+    // Method to add a triangle, returning its id; safe to call from any number of threads
+    public long addTriangle(int x1, int y1, int x2, int y2, int x3, int y3) {
+        long id = claim();
+        Chunk chunk = chunk(id);
+        int o = (int) (id & CHUNK_MASK) * STRIDE;
+        int[] c = chunk.coordinates;
+        c[o] = x1;
+        c[o + 1] = y1;
+        c[o + 2] = x2;
+        c[o + 3] = y2;
+        c[o + 4] = x3;
+        c[o + 5] = y3;
+        boolean right = ExactPredicates.isRightAngled(x1, y1, x2, y2, x3, y3);
+        triangles.increment();
+        if (right)
+            rightAngled.increment();
+        publish(chunk, id, (byte) (TRIANGLE | (right ? FLAGGED : 0)));
+        return id;
+    }
+
+    // Method to add a rectangle given by its corners p1-p2-p3-p4, returning its id
+    public long addRectangle(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4) {
+        long id = claim();
+        Chunk chunk = chunk(id);
+        int o = (int) (id & CHUNK_MASK) * STRIDE;
+        int[] c = chunk.coordinates;
+        c[o] = x1;
+        c[o + 1] = y1;
+        c[o + 2] = x2;
+        c[o + 3] = y2;
+        c[o + 4] = x3;
+        c[o + 5] = y3;
+        c[o + 6] = x4;
+        c[o + 7] = y4;
+        boolean square = ExactPredicates.isSquare(x1, y1, x2, y2, x4, y4);
+        rectangles.increment();
+        if (square)
+            squares.increment();
+        publish(chunk, id, (byte) (RECTANGLE | (square ? FLAGGED : 0)));
+        return id;
+    }
+
+    // Method to add a shape in the {{x,y},...} format of the 'main' methods: 3 vertices for a triangle, 4 for a rectangle
+    public long add(int[][] shape) {
+        if (shape.length == 3)
+            return addTriangle(shape[0][0], shape[0][1], shape[1][0], shape[1][1], shape[2][0], shape[2][1]);
+        if (shape.length == 4)
+            return addRectangle(shape[0][0], shape[0][1], shape[1][0], shape[1][1],
+                    shape[2][0], shape[2][1], shape[3][0], shape[3][1]);
+        throw new IllegalArgumentException("Expected 3 or 4 vertices, got " + shape.length);
+    }
+
+    // Method returning the length of the published prefix: every id below it is readable and complete.
+    // A writer that claimed a slot and has not finished holds the prefix back until it does
+    public long size() {
+        return published.get();
+    }
+
+    // Getter methods to retrieve the running totals, which include shapes still being published
+    public long triangleCount() {
+        return triangles.sum();
+    }
+
+    public long rectangleCount() {
+        return rectangles.sum();
+    }
+
+    public long squareCount() {
+        return squares.sum();
+    }
+
+    public long rightAngledCount() {
+        return rightAngled.sum();
+    }
+
+    // Getter method to retrieve TRIANGLE or RECTANGLE for a shape in the published prefix
+    public byte getKind(long id) {
+        return (byte) (kind(id) & KIND_MASK);
+    }
+
+    // Getter methods to retrieve a coordinate of vertex 'v' (0-based) of a shape in the published prefix
+    public int getX(long id, int v) {
+        return coordinates(id)[offset(id) + 2 * v];
+    }
+
+    public int getY(long id, int v) {
+        return coordinates(id)[offset(id) + 2 * v + 1];
+    }
+
+    // Method to calculate the area of a shape the same way Triangle and Rectangle do
+    public double getArea(long id) {
+        int[] c = coordinates(id);
+        int o = offset(id);
+        if (getKind(id) == TRIANGLE) {
+            long side1 = (long) c[o] * ((long) c[o + 3] - c[o + 5]);
+            long side2 = (long) c[o + 2] * ((long) c[o + 5] - c[o + 1]);
+            long side3 = (long) c[o + 4] * ((long) c[o + 1] - c[o + 3]);
+            return Math.abs((1.0 / 2) * (side1 + side2 + side3));
+        }
+        double length = ShapeBatch.distance(c[o], c[o + 1], c[o + 2], c[o + 3]);
+        double width = ShapeBatch.distance(c[o], c[o + 1], c[o + 6], c[o + 7]);
+        return length * width;
+    }
+
+    // Method to calculate the perimeter of a shape the same way Triangle and Rectangle do
+    public double getPerimeter(long id) {
+        int[] c = coordinates(id);
+        int o = offset(id);
+        double side1 = ShapeBatch.distance(c[o], c[o + 1], c[o + 2], c[o + 3]);
+        if (getKind(id) == TRIANGLE) {
+            double side2 = ShapeBatch.distance(c[o], c[o + 1], c[o + 4], c[o + 5]);
+            double side3 = ShapeBatch.distance(c[o + 2], c[o + 3], c[o + 4], c[o + 5]);
+            return (side1 + side2 + side3);
+        }
+        double width = ShapeBatch.distance(c[o], c[o + 1], c[o + 6], c[o + 7]);
+        return 2 * (side1 + width);
+    }
+
+    // Methods to check the flag classified when the shape was added
+    public boolean isSquare(long id) {
+        return kind(id) == (RECTANGLE | FLAGGED);
+    }
+
+    public boolean isRightAngled(long id) {
+        return kind(id) == (TRIANGLE | FLAGGED);
+    }
+
+    // Methods to pass the id of every square or right-angled triangle in the prefix published when the
+    // scan starts to 'action', in id order, returning how many were found. Writers are never blocked
+    public long forEachSquare(LongConsumer action) {
+        return scan((byte) (RECTANGLE | FLAGGED), action);
+    }
+
+    public long forEachRightAngled(LongConsumer action) {
+        return scan((byte) (TRIANGLE | FLAGGED), action);
+    }
+
+    // Method to print the coordinates of a shape to a ShapeWriter
+    public void print(long id, ShapeWriter out) {
+        int vertices = getKind(id) == TRIANGLE ? 3 : 4;
+        out.beginShape(vertices);
+        for (int v = 0; v < vertices; v++) {
+            out.writePoint(getX(id, v), getY(id, v));
+        }
+    }
+
+    private long scan(byte match, LongConsumer action) {
+        long end = published.get();
+        long found = 0;
+        for (long first = 0; first < end; first += CHUNK_SIZE) {
+            // Plain reads are enough: the watermark read above orders every write below 'end' before them
+            byte[] kinds = chunks.get((int) (first >>> CHUNK_SHIFT)).kinds;
+            int n = (int) Math.min(CHUNK_SIZE, end - first);
+            for (int k = 0; k < n; k++) {
+                if (kinds[k] == match) {
+                    found++;
+                    if (action != null)
+                        action.accept(first + k);
+                }
+            }
+        }
+        return found;
+    }
+
+    private long claim() {
+        long id = claimed.getAndIncrement();
+        if (id >= CAPACITY)
+            throw new IllegalStateException("ConcurrentShapeStore is full: " + CAPACITY + " shapes");
+        return id;
+    }
+
+    // Helper returning the chunk holding slot 'id', installing it first if no writer has yet
+    private Chunk chunk(long id) {
+        int c = (int) (id >>> CHUNK_SHIFT);
+        Chunk chunk = chunks.get(c);
+        if (chunk == null) {
+            Chunk fresh = new Chunk();
+            chunk = chunks.compareAndExchange(c, null, fresh);
+            if (chunk == null)
+                chunk = fresh;
+        }
+        return chunk;
+    }
+
+    // Helper publishing slot 'id' and moving the watermark over every published slot it now reaches.
+    // Whoever publishes the slot the watermark waits on carries it forward, so it never stalls behind
+    // a finished slot. The kind byte is written and read with volatile access: with release/acquire the
+    // write could move after the following reads, so the writers of two neighbouring slots could each
+    // miss the other's byte and both stop short of the end
+    private void publish(Chunk chunk, long id, byte kind) {
+        KINDS.setVolatile(chunk.kinds, (int) (id & CHUNK_MASK), kind);
+        long w = published.get();
+        while (isPublished(w)) {
+            if (published.compareAndSet(w, w + 1))
+                w++;
+            else
+                w = published.get();
+        }
+    }
+
+    private boolean isPublished(long id) {
+        if (id >= CAPACITY)
+            return false;
+        Chunk chunk = chunks.get((int) (id >>> CHUNK_SHIFT));
+        return chunk != null && (byte) KINDS.getVolatile(chunk.kinds, (int) (id & CHUNK_MASK)) != 0;
+    }
+
+    private byte kind(long id) {
+        checkPublished(id);
+        return chunks.get((int) (id >>> CHUNK_SHIFT)).kinds[(int) (id & CHUNK_MASK)];
+    }
+
+    private int[] coordinates(long id) {
+        checkPublished(id);
+        return chunks.get((int) (id >>> CHUNK_SHIFT)).coordinates;
+    }
+
+    private static int offset(long id) {
+        return (int) (id & CHUNK_MASK) * STRIDE;
+    }
+
+    private void checkPublished(long id) {
+        if (id < 0 || id >= published.get())
+            throw new IndexOutOfBoundsException("Shape " + id + " is not in the published prefix of " + published.get());
+    }
+
+    // Class 'Chunk' holding CHUNK_SIZE slots: coordinates in one int array and the kind bytes in another
+    private static final class Chunk {
+        final int[] coordinates = new int[CHUNK_SIZE * STRIDE];
+        final byte[] kinds = new byte[CHUNK_SIZE];
+    }
+
+    // Entry point ingesting random shapes from several producer threads while a reader keeps scanning
+    // the published prefix, then checking that the scans agree with the striped totals
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+        int perProducer = args.length > 1 ? (int) Double.parseDouble(args[1]) : 1_000_000;
+        ConcurrentShapeStore store = new ConcurrentShapeStore();
+        ExecutorService pool = Executors.newFixedThreadPool(producers + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<long[]> reader = pool.submit(() -> {
+            long scans = 0;
+            long lastPrefix = 0;
+            while (!done.get()) {
+                long prefix = store.size();
+                if (prefix < lastPrefix)
+                    throw new IllegalStateException("Published prefix went backwards");
+                store.forEachSquare(null);
+                lastPrefix = prefix;
+                scans++;
+            }
+            return new long[] { scans, lastPrefix };
+        });
+        int[][][][] inputs = new int[2 * producers][][][];
+        for (int p = 0; p < producers; p++) {
+            inputs[2 * p] = Bench.randomRectangles(perProducer / 2, p);
+            inputs[2 * p + 1] = Bench.randomTriangles(perProducer - perProducer / 2, p);
+        }
+        long start = System.nanoTime();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int[][][] rectanglesArray = inputs[2 * p];
+            int[][][] trianglesArray = inputs[2 * p + 1];
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < trianglesArray.length; i++) {
+                    if (i < rectanglesArray.length)
+                        store.add(rectanglesArray[i]);
+                    store.add(trianglesArray[i]);
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        long nanos = System.nanoTime() - start;
+        done.set(true);
+        long[] read = reader.get();
+        pool.shutdown();
+        long total = (long) producers * perProducer;
+        boolean consistent = store.size() == total && store.forEachSquare(null) == store.squareCount()
+                && store.forEachRightAngled(null) == store.rightAngledCount();
+        System.out.printf("%d producers added %,d shapes in %.1f ms (%.1f ns/shape) while a reader ran %,d scans; "
+                + "%,d squares, %,d right-angled, %s%n", producers, total, nanos / 1e6, (double) nanos / total,
+                read[0], store.squareCount(), store.rightAngledCount(), consistent ? "consistent" : "INCONSISTENT");
+    }
+}
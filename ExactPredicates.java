@@ -0,0 +1,138 @@
+// Importing necessary Java libraries
+import java.lang.Math;
+
+// Class 'ExactPredicates' with sqrt-free integer tests shared by the shape classes and batches
+final class ExactPredicates {
+    // Differences below this bound keep every product and sum of four products inside a long
+    private static final long SMALL = 1L << 30;
+
+    private ExactPredicates() {
+    }
+
+    // Methods to calculate the exact squared distance between two coordinates without a square root.
+    // Each squared difference is below 2^64, so a^2 + b^2 needs at most 65 bits: squaredDistanceLow
+    // returns the low 64 bits, to be read as unsigned, and squaredDistanceHigh bit 64 (0 or 1). Together
+    // they are exact for every pair of int coordinates and never overflow or throw
+    static long squaredDistanceLow(int x1, int y1, int x2, int y2) {
+        long a = (long) x1 - x2;
+        long b = (long) y1 - y2;
+        return a * a + b * b;
+    }
+
+    static long squaredDistanceHigh(int x1, int y1, int x2, int y2) {
+        long a = (long) x1 - x2;
+        long b = (long) y1 - y2;
+        long squared = a * a;
+        return carry(squared + b * b, squared);
+    }
+
+    // Method to check if the angle at vertex 'a' is a right angle, i.e. (b - a) . (c - a) == 0.
+    // This is the Pythagorean test |ab|^2 + |ac|^2 == |bc|^2 rearranged so no side is ever squared
+    static boolean isRightAngle(int ax, int ay, int bx, int by, int cx, int cy) {
+        long ux = (long) bx - ax;
+        long uy = (long) by - ay;
+        long vx = (long) cx - ax;
+        long vy = (long) cy - ay;
+        return signOfSum(ux, vx, uy, vy) == 0;
+    }
+
+    // Method to check if a triangle has a right angle at any of its three vertices
+    static boolean isRightAngled(int x1, int y1, int x2, int y2, int x3, int y3) {
+        return isRightAngle(x1, y1, x2, y2, x3, y3)
+            || isRightAngle(x2, y2, x1, y1, x3, y3)
+            || isRightAngle(x3, y3, x1, y1, x2, y2);
+    }
+
+    // Method to check if the sides p1-p2 and p1-p4 of a rectangle have the same length
+    static boolean isSquare(int x1, int y1, int x2, int y2, int x4, int y4) {
+        long lx = (long) x2 - x1;
+        long ly = (long) y2 - y1;
+        long wx = (long) x4 - x1;
+        long wy = (long) y4 - y1;
+        // |l|^2 - |w|^2 == 0
+        return signOfSum(lx, lx, ly, ly, -wx, wx, -wy, wy) == 0;
+    }
+
+    // Method returning the sign of the cross product (b - a) x (c - a): positive when a, b, c turn
+    // counter-clockwise, negative when they turn clockwise and zero when they are collinear
+    static int orientation(int ax, int ay, int bx, int by, int cx, int cy) {
+        long ux = (long) bx - ax;
+        long uy = (long) by - ay;
+        long vx = (long) cx - ax;
+        long vy = (long) cy - ay;
+        return signOfSum(ux, vy, -uy, vx);
+    }
+
+    // Method to check if (x, y) lies inside or on the edges of a triangle; degenerate triangles contain nothing
+    static boolean containsTriangle(int x, int y, int x1, int y1, int x2, int y2, int x3, int y3) {
+        int turn = orientation(x1, y1, x2, y2, x3, y3);
+        if (turn == 0)
+            return false;
+        return orientation(x1, y1, x2, y2, x, y) * turn >= 0
+            && orientation(x2, y2, x3, y3, x, y) * turn >= 0
+            && orientation(x3, y3, x1, y1, x, y) * turn >= 0;
+    }
+
+    // Method to check if (x, y) lies inside or on the edges of a convex quadrilateral p1-p2-p3-p4
+    static boolean containsQuadrilateral(int x, int y, int x1, int y1, int x2, int y2,
+            int x3, int y3, int x4, int y4) {
+        int turn = orientation(x1, y1, x2, y2, x3, y3);
+        if (turn == 0)
+            return false;
+        return orientation(x1, y1, x2, y2, x, y) * turn >= 0
+            && orientation(x2, y2, x3, y3, x, y) * turn >= 0
+            && orientation(x3, y3, x4, y4, x, y) * turn >= 0
+            && orientation(x4, y4, x1, y1, x, y) * turn >= 0;
+    }
+
+    // Method returning the exact sign of a*b + c*d for any long inputs
+    static int signOfSum(long a, long b, long c, long d) {
+        if (small(a) && small(b) && small(c) && small(d)) {
+            return Long.signum(a * b + c * d);
+        }
+        long lo1 = a * b;
+        long lo2 = c * d;
+        long lo = lo1 + lo2;
+        long hi = Math.multiplyHigh(a, b) + Math.multiplyHigh(c, d) + carry(lo, lo1);
+        return sign128(hi, lo);
+    }
+
+    // Method returning the exact sign of a*b + c*d + e*f + g*h for inputs of at most 63 bits
+    static int signOfSum(long a, long b, long c, long d, long e, long f, long g, long h) {
+        if (small(a) && small(b) && small(c) && small(d)
+                && small(e) && small(f) && small(g) && small(h)) {
+            return Long.signum(a * b + c * d + e * f + g * h);
+        }
+        long lo = a * b;
+        long hi = Math.multiplyHigh(a, b);
+        long term = c * d;
+        long sum = lo + term;
+        hi += Math.multiplyHigh(c, d) + carry(sum, lo);
+        lo = sum;
+        term = e * f;
+        sum = lo + term;
+        hi += Math.multiplyHigh(e, f) + carry(sum, lo);
+        lo = sum;
+        term = g * h;
+        sum = lo + term;
+        hi += Math.multiplyHigh(g, h) + carry(sum, lo);
+        return sign128(hi, sum);
+    }
+
+    // Helper returning 1 when the unsigned addition that produced 'sum' from 'addend' wrapped around
+    private static long carry(long sum, long addend) {
+        return Long.compareUnsigned(sum, addend) < 0 ? 1 : 0;
+    }
+
+    // Helper returning the sign of the 128-bit two's complement value hi:lo
+    private static int sign128(long hi, long lo) {
+        if (hi != 0)
+            return hi < 0 ? -1 : 1;
+        return lo == 0 ? 0 : 1;
+    }
+
+    // Helper checking whether a value is small enough for the plain long fast path
+    private static boolean small(long v) {
+        return v < SMALL && v > -SMALL;
+    }
+}
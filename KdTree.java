@@ -0,0 +1,450 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+// Class 'KdTree' indexing a static set of points for nearest-neighbour, radius and window queries.
+// The tree is implicit: the points are reordered in three primitive arrays so that each range [lo, hi)
+// holds a subtree whose splitting point sits at its middle, with smaller coordinates before it and larger
+// ones after, splitting on x and y alternately by depth. Building partitions around the median with
+// quickselect, the two halves of large ranges in parallel. Distances are compared squared as longs, exact
+// for coordinates within +/-2^30, and ids are the points' positions in the arrays the tree was built from
+final class KdTree {
+    // Ranges up to this size are scanned instead of split further
+    private static final int LEAF_SIZE = 8;
+
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] ids;
+
+    // Constructor to build the tree over points (xs[i], ys[i]); the arrays are copied
+    public KdTree(int[] xs, int[] ys) {
+        this(xs, ys, ForkJoinPool.commonPool(), ParallelClassifier.DEFAULT_THRESHOLD);
+    }
+
+    // Constructor to build the tree with a pool and the size below which a range is built on one thread
+    public KdTree(int[] xs, int[] ys, ForkJoinPool pool, int threshold) {
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("Coordinate arrays differ in length: " + xs.length + " and " + ys.length);
+        if (threshold < 1)
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        this.ids = new int[xs.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        if (ids.length <= threshold)
+            build(0, ids.length, 0);
+        else
+            pool.invoke(new BuildTask(0, ids.length, 0, threshold));
+    }
+
+    // Getter method to retrieve the number of points
+    public int size() {
+        return ids.length;
+    }
+
+    // Method returning the id of the point nearest to (x, y), the smaller id on ties, or -1 when empty
+    public int nearest(int x, int y) {
+        int[] result = new int[1];
+        return nearest(x, y, 1, result) == 1 ? result[0] : -1;
+    }
+
+    // Method to find up to 'k' points nearest to (x, y), closest first and ties by id. Writes their ids
+    // into 'result' and returns how many were found, like RTree.nearest
+    public int nearest(int x, int y, int k, int[] result) {
+        if (k <= 0)
+            return 0;
+        Neighbours heap = new Neighbours(k);
+        nearest(0, ids.length, 0, x, y, heap);
+        return heap.drain(result, 0);
+    }
+
+    // Method to answer a batch of queries (qx[q], qy[q]) in parallel, writing the k nearest ids of query q
+    // into result[q * k ..] and -1 in the slots of queries with fewer than k points
+    public void nearest(int[] qx, int[] qy, int k, int[] result) {
+        if (qx.length != qy.length)
+            throw new IllegalArgumentException("Query arrays differ in length: " + qx.length + " and " + qy.length);
+        if (k <= 0)
+            return;
+        int threshold = Math.max(1, ParallelClassifier.DEFAULT_THRESHOLD / 16);
+        if (qx.length <= threshold)
+            nearest(qx, qy, 0, qx.length, k, result);
+        else
+            ForkJoinPool.commonPool().invoke(new QueryTask(qx, qy, 0, qx.length, k, result, threshold));
+    }
+
+    // Method to pass every point within 'radius' of (x, y), boundary included, to 'action'; returns the count
+    public int within(int x, int y, int radius, IntConsumer action) {
+        if (radius < 0)
+            return 0;
+        return within(0, ids.length, 0, x, y, (long) radius * radius, action);
+    }
+
+    // Method to pass every point inside the window (edges included) to 'action'; returns the count
+    public int search(int minX, int minY, int maxX, int maxY, IntConsumer action) {
+        return search(0, ids.length, 0, minX, minY, maxX, maxY, action);
+    }
+
+    // Helper placing the median of [lo, hi) by the depth's coordinate at the middle, then its two halves
+    private void build(int lo, int hi, int depth) {
+        while (hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, depth & 1);
+            build(lo, mid, depth + 1);
+            lo = mid + 1;
+            depth++;
+        }
+    }
+
+    // Fork-join task building the two halves of a range at once until ranges fall under the threshold
+    @SuppressWarnings("serial")
+    private final class BuildTask extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final int depth;
+        private final int threshold;
+
+        BuildTask(int lo, int hi, int depth, int threshold) {
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.threshold = threshold;
+        }
+
+        protected void compute() {
+            if (hi - lo <= threshold) {
+                build(lo, hi, depth);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, depth & 1);
+            invokeAll(new BuildTask(lo, mid, depth + 1, threshold), new BuildTask(mid + 1, hi, depth + 1, threshold));
+        }
+    }
+
+    // Helper reordering [lo, hi) so that position 'k' holds the point it would hold if sorted by the
+    // coordinate 'axis' (0 = x, 1 = y), with no larger coordinate before it and no smaller one after
+    private void select(int lo, int hi, int k, int axis) {
+        int[] c = axis == 0 ? xs : ys;
+        hi--;
+        while (hi > lo) {
+            // Median of three as the pivot, then a Hoare partition
+            int mid = (lo + hi) >>> 1;
+            if (c[mid] < c[lo])
+                swap(mid, lo);
+            if (c[hi] < c[lo])
+                swap(hi, lo);
+            if (c[hi] < c[mid])
+                swap(hi, mid);
+            int pivot = c[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (c[i] < pivot)
+                    i++;
+                while (c[j] > pivot)
+                    j--;
+                if (i <= j)
+                    swap(i++, j--);
+            }
+            if (k <= j)
+                hi = j;
+            else if (k >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int t = xs[a];
+        xs[a] = xs[b];
+        xs[b] = t;
+        t = ys[a];
+        ys[a] = ys[b];
+        ys[b] = t;
+        t = ids[a];
+        ids[a] = ids[b];
+        ids[b] = t;
+    }
+
+    // Helper answering queries [from, to) of a batch with one reused heap
+    private void nearest(int[] qx, int[] qy, int from, int to, int k, int[] result) {
+        Neighbours heap = new Neighbours(k);
+        for (int q = from; q < to; q++) {
+            nearest(0, ids.length, 0, qx[q], qy[q], heap);
+            int found = heap.drain(result, q * k);
+            Arrays.fill(result, q * k + found, (q + 1) * k, -1);
+        }
+    }
+
+    // Fork-join task halving a batch of queries until it falls under the threshold
+    @SuppressWarnings("serial")
+    private final class QueryTask extends RecursiveAction {
+        private final int[] qx;
+        private final int[] qy;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final int[] result;
+        private final int threshold;
+
+        QueryTask(int[] qx, int[] qy, int from, int to, int k, int[] result, int threshold) {
+            this.qx = qx;
+            this.qy = qy;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.result = result;
+            this.threshold = threshold;
+        }
+
+        protected void compute() {
+            if (to - from <= threshold) {
+                nearest(qx, qy, from, to, k, result);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new QueryTask(qx, qy, from, mid, k, result, threshold),
+                    new QueryTask(qx, qy, mid, to, k, result, threshold));
+        }
+    }
+
+    // Helper descending into the side of each split holding (x, y) first, and into the other side only
+    // while the splitting line is no farther than the k-th nearest point found so far
+    private void nearest(int lo, int hi, int depth, int x, int y, Neighbours heap) {
+        while (hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            heap.offer(squaredDistance(mid, x, y), ids[mid]);
+            long diff = (depth & 1) == 0 ? (long) x - xs[mid] : (long) y - ys[mid];
+            depth++;
+            if (diff < 0) {
+                nearest(lo, mid, depth, x, y, heap);
+                if (heap.full() && diff * diff > heap.worst())
+                    return;
+                lo = mid + 1;
+            } else {
+                nearest(mid + 1, hi, depth, x, y, heap);
+                if (heap.full() && diff * diff > heap.worst())
+                    return;
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < hi; i++) {
+            heap.offer(squaredDistance(i, x, y), ids[i]);
+        }
+    }
+
+    private int within(int lo, int hi, int depth, int x, int y, long r2, IntConsumer action) {
+        int count = 0;
+        while (hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            if (squaredDistance(mid, x, y) <= r2) {
+                action.accept(ids[mid]);
+                count++;
+            }
+            long diff = (depth & 1) == 0 ? (long) x - xs[mid] : (long) y - ys[mid];
+            depth++;
+            // The near side always, the far side when the circle crosses the splitting line
+            if (diff < 0) {
+                count += within(lo, mid, depth, x, y, r2, action);
+                if (diff * diff > r2)
+                    return count;
+                lo = mid + 1;
+            } else {
+                count += within(mid + 1, hi, depth, x, y, r2, action);
+                if (diff * diff > r2)
+                    return count;
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < hi; i++) {
+            if (squaredDistance(i, x, y) <= r2) {
+                action.accept(ids[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int search(int lo, int hi, int depth, int minX, int minY, int maxX, int maxY, IntConsumer action) {
+        int count = 0;
+        while (hi - lo > LEAF_SIZE) {
+            int mid = (lo + hi) >>> 1;
+            int x = xs[mid];
+            int y = ys[mid];
+            if (minX <= x && x <= maxX && minY <= y && y <= maxY) {
+                action.accept(ids[mid]);
+                count++;
+            }
+            int split = (depth & 1) == 0 ? x : y;
+            int low = (depth & 1) == 0 ? minX : minY;
+            int high = (depth & 1) == 0 ? maxX : maxY;
+            depth++;
+            if (low <= split)
+                count += search(lo, mid, depth, minX, minY, maxX, maxY, action);
+            if (high < split)
+                return count;
+            lo = mid + 1;
+        }
+        for (int i = lo; i < hi; i++) {
+            if (minX <= xs[i] && xs[i] <= maxX && minY <= ys[i] && ys[i] <= maxY) {
+                action.accept(ids[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long squaredDistance(int i, int x, int y) {
+        long dx = (long) xs[i] - x;
+        long dy = (long) ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+
+    // Bounded max-heap of (squared distance, id) keeping the k nearest points seen, farthest at the root
+    private static final class Neighbours {
+        final long[] distances;
+        final int[] ids;
+        int size;
+
+        Neighbours(int k) {
+            distances = new long[k];
+            ids = new int[k];
+        }
+
+        boolean full() {
+            return size == ids.length;
+        }
+
+        long worst() {
+            return distances[0];
+        }
+
+        // Method to keep (d, id) if it is nearer than the farthest kept point, ties going to the smaller id
+        void offer(long d, int id) {
+            if (size < ids.length) {
+                int at = size++;
+                while (at > 0) {
+                    int up = (at - 1) >>> 1;
+                    if (!farther(d, id, distances[up], ids[up]))
+                        break;
+                    distances[at] = distances[up];
+                    ids[at] = ids[up];
+                    at = up;
+                }
+                distances[at] = d;
+                ids[at] = id;
+            } else if (farther(distances[0], ids[0], d, id)) {
+                down(d, id);
+            }
+        }
+
+        // Method to write the kept ids nearest first from result[offset] and empty the heap
+        int drain(int[] result, int offset) {
+            int found = size;
+            while (size > 0) {
+                result[offset + size - 1] = ids[0];
+                int last = --size;
+                if (size > 0)
+                    down(distances[last], ids[last]);
+            }
+            return found;
+        }
+
+        // Helper replacing the root with (d, id) and sifting it down
+        private void down(long d, int id) {
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && farther(distances[child + 1], ids[child + 1], distances[child], ids[child]))
+                    child++;
+                if (!farther(distances[child], ids[child], d, id))
+                    break;
+                distances[at] = distances[child];
+                ids[at] = ids[child];
+                at = child;
+            }
+            distances[at] = d;
+            ids[at] = id;
+        }
+
+        private static boolean farther(long d1, int id1, long d2, int id2) {
+            return d1 > d2 || (d1 == d2 && id1 > id2);
+        }
+    }
+
+    // Entry point building trees over random triangle vertices, answering a batch of nearest-vertex
+    // queries, and checking a sample of k-nearest, radius and window queries against linear scans
+    public static void main(String[] args) {
+        int k = 5;
+        for (int n : Bench.sizes(args, 0)) {
+            int[][][] trianglesArray = Bench.randomTriangles((n + 2) / 3, 42);
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = trianglesArray[i / 3][i % 3][0];
+                ys[i] = trianglesArray[i / 3][i % 3][1];
+            }
+            long start = System.nanoTime();
+            KdTree serial = new KdTree(xs, ys, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+            long serialNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            KdTree tree = new KdTree(xs, ys);
+            long buildNanos = System.nanoTime() - start;
+            Random random = new Random(7);
+            int queries = 100_000;
+            int[] qx = new int[queries];
+            int[] qy = new int[queries];
+            for (int q = 0; q < queries; q++) {
+                qx[q] = random.nextInt(10_000);
+                qy[q] = random.nextInt(10_000);
+            }
+            int[] result = new int[queries * k];
+            start = System.nanoTime();
+            tree.nearest(qx, qy, k, result);
+            long queryNanos = System.nanoTime() - start;
+            boolean ok = serial.nearest(qx[0], qy[0]) == result[0] || n == 0;
+            int[] single = new int[k];
+            int[] count = new int[1];
+            for (int q = 0; q < Math.min(queries, 2_000_000 / Math.max(1, n)); q++) {
+                int found = tree.nearest(qx[q], qy[q], k, single);
+                // k-nearest: same ids as the batch, and no point outside them nearer than the k-th
+                long kth = found == 0 ? Long.MAX_VALUE : squared(xs, ys, single[found - 1], qx[q], qy[q]);
+                int nearer = 0;
+                int inRadius = 0;
+                int inWindow = 0;
+                for (int i = 0; i < n; i++) {
+                    long d = squared(xs, ys, i, qx[q], qy[q]);
+                    if (d < kth)
+                        nearer++;
+                    if (d <= 50 * 50)
+                        inRadius++;
+                    if (Math.abs(xs[i] - qx[q]) <= 40 && Math.abs(ys[i] - qy[q]) <= 60)
+                        inWindow++;
+                }
+                for (int r = 0; r < k; r++) {
+                    ok &= r < found ? result[q * k + r] == single[r] : result[q * k + r] == -1;
+                }
+                count[0] = 0;
+                ok &= found == Math.min(k, n) && nearer < found
+                        && tree.within(qx[q], qy[q], 50, i -> count[0]++) == inRadius && count[0] == inRadius
+                        && tree.search(qx[q] - 40, qy[q] - 60, qx[q] + 40, qy[q] + 60, i -> { }) == inWindow;
+            }
+            System.out.printf("%,d points: built in %.1f ms (%.1f ms on one thread), %,d %d-nearest queries in %.1f ms (%,.0f per second), %s%n",
+                    n, buildNanos / 1e6, serialNanos / 1e6, queries, k, queryNanos / 1e6, queries / (queryNanos / 1e9),
+                    ok ? "matches linear scans" : "DIFFERS from linear scans");
+        }
+    }
+
+    // Helper returning the squared distance from point i to (x, y) for the linear scans
+    private static long squared(int[] xs, int[] ys, int i, int x, int y) {
+        long dx = (long) xs[i] - x;
+        long dy = (long) ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,255 @@
+// Importing necessary Java libraries
+import java.util.function.LongConsumer;
+import jdk.incubator.foreign.*;
+
+// Class 'OffHeapShapeStore' keeping triangles or rectangles in native memory instead of as Point objects.
+// Every shape takes a fixed 6 (triangles) or 8 (rectangles) ints: its {x,y} pairs in vertex order.
+// The memory belongs to a shared ResourceScope that close() releases at once; any access after that
+// fails with an IllegalStateException instead of reading freed memory.
+// Needs --add-modules jdk.incubator.foreign at compile and run time (the JDK 17 form of the FFM API);
+// on JDK 17 native segments count against -XX:MaxDirectMemorySize, which defaults to the heap size
+class OffHeapShapeStore implements AutoCloseable {
+    public static final int TRIANGLES = 3;
+    public static final int RECTANGLES = 4;
+
+    // Shapes staged on the heap per bulk copy, so copying in never needs a heap array the size of the store
+    private static final int STAGED_SHAPES = 1 << 14;
+
+    private final int vertices;
+    private final int ints;
+    private final long capacity;
+    private final ResourceScope scope;
+    private final MemorySegment segment;
+    private long count;
+
+    // Constructor reserving native memory for 'capacity' shapes with 'vertices' vertices each
+    public OffHeapShapeStore(int vertices, long capacity) {
+        if (vertices != TRIANGLES && vertices != RECTANGLES)
+            throw new IllegalArgumentException("Unsupported vertices per shape: " + vertices);
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        this.vertices = vertices;
+        this.ints = vertices * 2;
+        this.capacity = capacity;
+        this.scope = ResourceScope.newSharedScope();
+        this.segment = MemorySegment.allocateNative(Math.max(capacity, 1) * ints * Integer.BYTES,
+                Integer.BYTES, scope);
+    }
+
+    // Method to copy the same 3D coordinate arrays the 'main' methods use into a new store
+    public static OffHeapShapeStore copyOf(int[][][] shapesArray) {
+        if (shapesArray.length == 0)
+            throw new IllegalArgumentException("Cannot infer the shape kind of an empty array");
+        OffHeapShapeStore store = new OffHeapShapeStore(shapesArray[0].length, shapesArray.length);
+        store.addAll(shapesArray);
+        return store;
+    }
+
+    // Getter method to retrieve the number of vertices per shape
+    public int getVertices() {
+        return vertices;
+    }
+
+    // Getter method to retrieve the number of shapes stored so far
+    public long size() {
+        return count;
+    }
+
+    // Getter method to retrieve the number of shapes the store has room for
+    public long capacity() {
+        return capacity;
+    }
+
+    // Getter method to check whether the native memory has not been released yet
+    public boolean isAlive() {
+        return scope.isAlive();
+    }
+
+    // Method to append one shape given as {{x,y},...}, returning its index
+    public long add(int[][] shape) {
+        checkShape(shape);
+        if (count == capacity)
+            throw new IllegalStateException("Store is full: " + capacity + " shapes");
+        long base = count * ints;
+        for (int v = 0; v < vertices; v++) {
+            MemoryAccess.setIntAtIndex(segment, base + v * 2, shape[v][0]);
+            MemoryAccess.setIntAtIndex(segment, base + v * 2 + 1, shape[v][1]);
+        }
+        return count++;
+    }
+
+    // Method to append every shape of 'shapesArray', returning the index of the first one.
+    // Shapes are flattened into a small heap buffer and copied into native memory in bulk
+    public long addAll(int[][][] shapesArray) {
+        if (capacity - count < shapesArray.length)
+            throw new IllegalStateException("Store has room for " + (capacity - count) + " more shapes, not "
+                    + shapesArray.length);
+        long first = count;
+        int[] staged = new int[Math.min(shapesArray.length, STAGED_SHAPES) * ints];
+        MemorySegment source = MemorySegment.ofArray(staged);
+        for (int from = 0; from < shapesArray.length; from += STAGED_SHAPES) {
+            int shapes = Math.min(STAGED_SHAPES, shapesArray.length - from);
+            int k = 0;
+            for (int i = from; i < from + shapes; i++) {
+                int[][] shape = shapesArray[i];
+                checkShape(shape);
+                for (int v = 0; v < vertices; v++) {
+                    staged[k++] = shape[v][0];
+                    staged[k++] = shape[v][1];
+                }
+            }
+            long bytes = (long) k * Integer.BYTES;
+            segment.asSlice(count * ints * Integer.BYTES, bytes).copyFrom(source.asSlice(0, bytes));
+            count += shapes;
+        }
+        return first;
+    }
+
+    // Getter methods to retrieve a coordinate of vertex 'v' (0-based) of shape 'i'
+    public int getX(long i, int v) {
+        return MemoryAccess.getIntAtIndex(segment, base(i) + v * 2);
+    }
+
+    public int getY(long i, int v) {
+        return MemoryAccess.getIntAtIndex(segment, base(i) + v * 2 + 1);
+    }
+
+    // Method to calculate the area of shape 'i' the same way Triangle and Rectangle do
+    public double getArea(long i) {
+        long o = base(i);
+        if (vertices == TRIANGLES) {
+            long side1 = (long) x(o, 0) * ((long) y(o, 1) - y(o, 2));
+            long side2 = (long) x(o, 1) * ((long) y(o, 2) - y(o, 0));
+            long side3 = (long) x(o, 2) * ((long) y(o, 0) - y(o, 1));
+            return Math.abs((1.0 / 2) * (side1 + side2 + side3));
+        }
+        double length = ShapeBatch.distance(x(o, 0), y(o, 0), x(o, 1), y(o, 1));
+        double width = ShapeBatch.distance(x(o, 0), y(o, 0), x(o, 3), y(o, 3));
+        return length * width;
+    }
+
+    // Method to calculate the perimeter of shape 'i' the same way Triangle and Rectangle do
+    public double getPerimeter(long i) {
+        long o = base(i);
+        double side1 = ShapeBatch.distance(x(o, 0), y(o, 0), x(o, 1), y(o, 1));
+        if (vertices == TRIANGLES) {
+            double side2 = ShapeBatch.distance(x(o, 0), y(o, 0), x(o, 2), y(o, 2));
+            double side3 = ShapeBatch.distance(x(o, 1), y(o, 1), x(o, 2), y(o, 2));
+            return (side1 + side2 + side3);
+        }
+        double width = ShapeBatch.distance(x(o, 0), y(o, 0), x(o, 3), y(o, 3));
+        return 2 * (side1 + width);
+    }
+
+    // Method to check if rectangle 'i' is a square
+    public boolean isSquare(long i) {
+        checkKind(RECTANGLES);
+        return isSquareAt(base(i));
+    }
+
+    // Method to check if triangle 'i' is a right-angled triangle
+    public boolean isRightAngled(long i) {
+        checkKind(TRIANGLES);
+        return isRightAngledAt(base(i));
+    }
+
+    // Method to pass the index of every square to 'action', in insertion order
+    public long forEachSquare(LongConsumer action) {
+        checkKind(RECTANGLES);
+        long found = 0;
+        for (long i = 0; i < count; i++) {
+            if (isSquareAt(i * ints)) {
+                found++;
+                if (action != null)
+                    action.accept(i);
+            }
+        }
+        return found;
+    }
+
+    // Method to pass the index of every right-angled triangle to 'action', in insertion order
+    public long forEachRightAngled(LongConsumer action) {
+        checkKind(TRIANGLES);
+        long found = 0;
+        for (long i = 0; i < count; i++) {
+            if (isRightAngledAt(i * ints)) {
+                found++;
+                if (action != null)
+                    action.accept(i);
+            }
+        }
+        return found;
+    }
+
+    // Method to print the coordinates of shape 'i' in the same format as Point.print()
+    public void print(long i) {
+        for (int v = 0; v < vertices; v++) {
+            ShapeBatch.printPoint(getX(i, v), getY(i, v));
+        }
+    }
+
+    // Method to print the coordinates of shape 'i' to a ShapeWriter
+    public void print(long i, ShapeWriter out) {
+        out.beginShape(vertices);
+        for (int v = 0; v < vertices; v++) {
+            out.writePoint(getX(i, v), getY(i, v));
+        }
+    }
+
+    // Method to release the native memory; the store cannot be used afterwards
+    public void close() {
+        scope.close();
+    }
+
+    private boolean isSquareAt(long o) {
+        return ExactPredicates.isSquare(x(o, 0), y(o, 0), x(o, 1), y(o, 1), x(o, 3), y(o, 3));
+    }
+
+    private boolean isRightAngledAt(long o) {
+        return ExactPredicates.isRightAngled(x(o, 0), y(o, 0), x(o, 1), y(o, 1), x(o, 2), y(o, 2));
+    }
+
+    private int x(long o, int v) {
+        return MemoryAccess.getIntAtIndex(segment, o + v * 2);
+    }
+
+    private int y(long o, int v) {
+        return MemoryAccess.getIntAtIndex(segment, o + v * 2 + 1);
+    }
+
+    private long base(long i) {
+        if (i < 0 || i >= count)
+            throw new IndexOutOfBoundsException("Shape " + i + " of " + count);
+        return i * ints;
+    }
+
+    private void checkShape(int[][] shape) {
+        if (shape.length != vertices)
+            throw new IllegalArgumentException("Expected " + vertices + " vertices, got " + shape.length);
+    }
+
+    private void checkKind(int expected) {
+        if (vertices != expected)
+            throw new IllegalStateException("Store holds shapes with " + vertices + " vertices, not " + expected);
+    }
+
+    // Entry point filling a store with 'n' random rectangles in bulk chunks and counting the squares,
+    // e.g. "java --add-modules jdk.incubator.foreign -Xmx64m -XX:MaxDirectMemorySize=16g OffHeapShapeStore 3e8"
+    public static void main(String[] args) {
+        long n = args.length > 0 ? (long) Double.parseDouble(args[0]) : 10_000_000L;
+        int chunk = 1 << 16;
+        long start = System.nanoTime();
+        try (OffHeapShapeStore store = new OffHeapShapeStore(RECTANGLES, n)) {
+            for (long filled = 0; filled < n; filled += chunk) {
+                store.addAll(Bench.randomRectangles((int) Math.min(chunk, n - filled), filled));
+            }
+            long loaded = System.nanoTime();
+            long squares = store.forEachSquare(null);
+            long done = System.nanoTime();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("%d rectangles, %d squares; load %.1f s, scan %.1f s, heap used %d MB%n",
+                    store.size(), squares, (loaded - start) / 1e9, (done - loaded) / 1e9,
+                    (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'OverlapSweep' reporting every pair of overlapping shapes in O((n + k) log n) for k pairs,
+// instead of testing all n^2 pairs. A vertical line sweeps left to right over the box edges; the boxes
+// it currently crosses are kept in an interval tree on their y-extent, so each box entering the sweep
+// meets only the active boxes whose y-extent overlaps its own. For axis-aligned rectangles that already is
+// the exact answer; exact() uses the same sweep as a filter and confirms each candidate pair of triangles
+// or rotated rectangles with integer orientation tests. Closed shapes: touching edges count as overlap,
+// as in RTree.search. Pairs are passed to a callback as they are found, smaller index first, and never
+// collected in a list
+final class OverlapSweep {
+    // Functional interface receiving one overlapping pair (i < j)
+    interface PairConsumer {
+        void accept(int i, int j);
+    }
+
+    private OverlapSweep() {
+    }
+
+    // Method to report every pair of the 'n' shapes whose bounding boxes overlap, e.g. with
+    // (i, box) -> rectangles[i].getBounds(box); returns the number of pairs ('action' may be null)
+    static long boxes(int n, RTree.Bounds bounds, PairConsumer action) {
+        int[] box = new int[4];
+        int[] minX = new int[n];
+        int[] minY = new int[n];
+        int[] maxX = new int[n];
+        int[] maxY = new int[n];
+        for (int i = 0; i < n; i++) {
+            bounds.getBounds(i, box);
+            minX[i] = box[0];
+            minY[i] = box[1];
+            maxX[i] = box[2];
+            maxY[i] = box[3];
+        }
+        return sweep(minX, minY, maxX, maxY, action);
+    }
+
+    // Method to report every overlapping pair of triangles and rectangles in any orientation, given in the
+    // {{x,y},...} format of the 'main' methods (3 or 4 vertices each, both may be mixed)
+    static long exact(int[][][] shapes, PairConsumer action) {
+        int n = shapes.length;
+        // Shapes are renumbered in order of their left edge, which is the order the sweep meets them, and
+        // their vertices packed 8 ints per shape in that order: the boxes active at any moment then sit
+        // close together in memory and checking a candidate pair rarely misses the cache
+        long[] byLeft = new long[n];
+        for (int i = 0; i < n; i++) {
+            int left = Integer.MAX_VALUE;
+            for (int[] p : shapes[i]) {
+                left = Math.min(left, p[0]);
+            }
+            byLeft[i] = ((long) left << 32) | i;
+        }
+        Arrays.sort(byLeft);
+        int[] original = new int[n];
+        int[] minX = new int[n];
+        int[] minY = new int[n];
+        int[] maxX = new int[n];
+        int[] maxY = new int[n];
+        int[] packed = new int[8 * n];
+        int[] vertices = new int[n];
+        for (int r = 0; r < n; r++) {
+            int i = (int) byLeft[r];
+            int[][] shape = shapes[i];
+            if (shape.length != 3 && shape.length != 4)
+                throw new IllegalArgumentException("Expected 3 or 4 vertices, got " + shape.length + " for shape " + i);
+            original[r] = i;
+            vertices[r] = shape.length;
+            minX[r] = Integer.MAX_VALUE;
+            minY[r] = Integer.MAX_VALUE;
+            maxX[r] = Integer.MIN_VALUE;
+            maxY[r] = Integer.MIN_VALUE;
+            for (int v = 0; v < shape.length; v++) {
+                int x = shape[v][0];
+                int y = shape[v][1];
+                packed[8 * r + 2 * v] = x;
+                packed[8 * r + 2 * v + 1] = y;
+                minX[r] = Math.min(minX[r], x);
+                minY[r] = Math.min(minY[r], y);
+                maxX[r] = Math.max(maxX[r], x);
+                maxY[r] = Math.max(maxY[r], y);
+            }
+        }
+        long[] found = new long[1];
+        sweep(minX, minY, maxX, maxY, (r, s) -> {
+            if (intersect(packed, 8 * r, vertices[r], 8 * s, vertices[s])) {
+                found[0]++;
+                if (action != null) {
+                    int i = original[r];
+                    int j = original[s];
+                    action.accept(Math.min(i, j), Math.max(i, j));
+                }
+            }
+        });
+        return found[0];
+    }
+
+    // Method to check whether two closed convex shapes (triangles or rectangles in any orientation) have a
+    // point in common
+    static boolean intersect(int[][] a, int[][] b) {
+        int[] packed = new int[2 * (a.length + b.length)];
+        for (int v = 0; v < a.length; v++) {
+            packed[2 * v] = a[v][0];
+            packed[2 * v + 1] = a[v][1];
+        }
+        for (int v = 0; v < b.length; v++) {
+            packed[2 * (a.length + v)] = b[v][0];
+            packed[2 * (a.length + v) + 1] = b[v][1];
+        }
+        return intersect(packed, 0, a.length, 2 * a.length, b.length);
+    }
+
+    // Helper checking two shapes stored as {x, y} pairs from offsets 'a' (na vertices) and 'b' (nb) of 'c'.
+    // Two convex shapes are apart exactly when the line through some edge of one has the whole other shape
+    // strictly on its outer side, which usually shows after a few orientation tests; degenerate (flat)
+    // shapes have no outer side and are compared edge by edge instead
+    private static boolean intersect(int[] c, int a, int na, int b, int nb) {
+        int turnA = orientation(c, a, a + 2, a + 4);
+        int turnB = orientation(c, b, b + 2, b + 4);
+        if (turnA == 0 || turnB == 0)
+            return touch(c, a, na, b, nb);
+        return !separates(c, a, na, turnA, b, nb) && !separates(c, b, nb, turnB, a, na);
+    }
+
+    // Helper checking whether the line through some edge of shape 'a' has every vertex of 'b' strictly outside 'a'
+    private static boolean separates(int[] c, int a, int na, int turn, int b, int nb) {
+        for (int k = 0; k < na; k++) {
+            int p = a + 2 * k;
+            int q = a + 2 * ((k + 1) % na);
+            boolean outside = true;
+            for (int v = 0; v < nb; v++) {
+                if (orientation(c, p, q, b + 2 * v) * turn >= 0) {
+                    outside = false;
+                    break;
+                }
+            }
+            if (outside)
+                return true;
+        }
+        return false;
+    }
+
+    // Helper checking whether two shapes, flat ones included, meet: two edges cross or touch, or one
+    // shape lies entirely inside the other
+    private static boolean touch(int[] c, int a, int na, int b, int nb) {
+        for (int k = 0; k < na; k++) {
+            int p = a + 2 * k;
+            int q = a + 2 * ((k + 1) % na);
+            for (int l = 0; l < nb; l++) {
+                if (segmentsIntersect(c, p, q, b + 2 * l, b + 2 * ((l + 1) % nb)))
+                    return true;
+            }
+        }
+        return contains(c, b, nb, a) || contains(c, a, na, b);
+    }
+
+    // Helper running the sweep over box columns
+    private static long sweep(int[] minX, int[] minY, int[] maxX, int[] maxY, PairConsumer action) {
+        int n = minX.length;
+        // Event = x in the high half, then 0 to enter or 1 to leave, then the shape index: sorting the
+        // longs orders events by x with entries first, so boxes that only touch at an x still meet
+        long[] events = new long[2 * n];
+        for (int i = 0; i < n; i++) {
+            events[2 * i] = ((long) minX[i] << 32) | i;
+            events[2 * i + 1] = ((long) maxX[i] << 32) | (1L << 31) | i;
+        }
+        Arrays.sort(events);
+        IntervalTree active = new IntervalTree(minY, maxY);
+        long pairs = 0;
+        for (long event : events) {
+            int i = (int) (event & 0x7FFFFFFF);
+            if ((event & (1L << 31)) == 0) {
+                pairs += active.report(i, action);
+                active.insert(i);
+            } else {
+                active.remove(i);
+            }
+        }
+        return pairs;
+    }
+
+    // Helper checking whether the point at 'p' lies inside or on the shape at 's'
+    private static boolean contains(int[] c, int s, int ns, int p) {
+        if (ns == 3)
+            return ExactPredicates.containsTriangle(c[p], c[p + 1], c[s], c[s + 1], c[s + 2], c[s + 3], c[s + 4], c[s + 5]);
+        return ExactPredicates.containsQuadrilateral(c[p], c[p + 1], c[s], c[s + 1], c[s + 2], c[s + 3],
+                c[s + 4], c[s + 5], c[s + 6], c[s + 7]);
+    }
+
+    // Helper checking whether the closed segments p-q and r-s (offsets of {x, y} pairs) have any point in common
+    private static boolean segmentsIntersect(int[] c, int p, int q, int r, int s) {
+        int o1 = orientation(c, p, q, r);
+        int o2 = orientation(c, p, q, s);
+        int o3 = orientation(c, r, s, p);
+        int o4 = orientation(c, r, s, q);
+        if (o1 * o2 < 0 && o3 * o4 < 0)
+            return true;
+        return (o1 == 0 && onSegment(c, p, q, r)) || (o2 == 0 && onSegment(c, p, q, s))
+            || (o3 == 0 && onSegment(c, r, s, p)) || (o4 == 0 && onSegment(c, r, s, q));
+    }
+
+    private static int orientation(int[] c, int a, int b, int p) {
+        return ExactPredicates.orientation(c[a], c[a + 1], c[b], c[b + 1], c[p], c[p + 1]);
+    }
+
+    // Helper checking whether the point at 'p', already known to be collinear with a-b, lies within the segment
+    private static boolean onSegment(int[] c, int a, int b, int p) {
+        return Math.min(c[a], c[b]) <= c[p] && c[p] <= Math.max(c[a], c[b])
+            && Math.min(c[a + 1], c[b + 1]) <= c[p + 1] && c[p + 1] <= Math.max(c[a + 1], c[b + 1]);
+    }
+
+    // Class 'IntervalTree' holding the y-extents of the active boxes in a treap ordered by lower end,
+    // each node also knowing the highest upper end below it. A query skips every subtree whose highest
+    // upper end lies under the query and everything right of the first lower end above it, so reporting
+    // k overlaps costs O((k + 1) log n). Nodes are shape indices and live in parallel int arrays
+    private static final class IntervalTree {
+        private final int[] low;
+        private final int[] high;
+        private final int[] left;
+        private final int[] right;
+        private final int[] priority;
+        private final int[] maxHigh;
+        private int root = -1;
+        // Results of split()
+        private int splitLeft;
+        private int splitRight;
+
+        IntervalTree(int[] low, int[] high) {
+            int n = low.length;
+            this.low = low;
+            this.high = high;
+            left = new int[n];
+            right = new int[n];
+            priority = new int[n];
+            maxHigh = new int[n];
+            SplittableRandom random = new SplittableRandom(n);
+            for (int i = 0; i < n; i++) {
+                priority[i] = random.nextInt();
+            }
+        }
+
+        void insert(int i) {
+            root = insert(root, i);
+        }
+
+        void remove(int i) {
+            root = remove(root, i);
+        }
+
+        // Method to pass every active interval overlapping that of shape 'i' to 'action' as a pair with 'i'
+        long report(int i, PairConsumer action) {
+            return report(root, low[i], high[i], i, action);
+        }
+
+        private long report(int t, int lo, int hi, int i, PairConsumer action) {
+            if (t < 0 || maxHigh[t] < lo)
+                return 0;
+            long found = report(left[t], lo, hi, i, action);
+            if (low[t] > hi)
+                return found;
+            if (high[t] >= lo) {
+                found++;
+                if (action != null)
+                    action.accept(Math.min(t, i), Math.max(t, i));
+            }
+            return found + report(right[t], lo, hi, i, action);
+        }
+
+        private int insert(int t, int i) {
+            if (t < 0 || priority[i] > priority[t]) {
+                split(t, i);
+                left[i] = splitLeft;
+                right[i] = splitRight;
+                update(i);
+                return i;
+            }
+            if (less(i, t))
+                left[t] = insert(left[t], i);
+            else
+                right[t] = insert(right[t], i);
+            update(t);
+            return t;
+        }
+
+        private int remove(int t, int i) {
+            if (t == i)
+                return merge(left[t], right[t]);
+            if (less(i, t))
+                left[t] = remove(left[t], i);
+            else
+                right[t] = remove(right[t], i);
+            update(t);
+            return t;
+        }
+
+        // Helper splitting subtree 't' into the nodes ordered before 'i' and those after it
+        private void split(int t, int i) {
+            if (t < 0) {
+                splitLeft = -1;
+                splitRight = -1;
+            } else if (less(t, i)) {
+                split(right[t], i);
+                right[t] = splitLeft;
+                update(t);
+                splitLeft = t;
+            } else {
+                split(left[t], i);
+                left[t] = splitRight;
+                update(t);
+                splitRight = t;
+            }
+        }
+
+        private int merge(int a, int b) {
+            if (a < 0)
+                return b;
+            if (b < 0)
+                return a;
+            if (priority[a] > priority[b]) {
+                right[a] = merge(right[a], b);
+                update(a);
+                return a;
+            }
+            left[b] = merge(a, left[b]);
+            update(b);
+            return b;
+        }
+
+        // Nodes are ordered by lower end, ties by shape index, so every node has a unique position
+        private boolean less(int a, int b) {
+            return low[a] < low[b] || (low[a] == low[b] && a < b);
+        }
+
+        private void update(int t) {
+            int m = high[t];
+            if (left[t] >= 0)
+                m = Math.max(m, maxHigh[left[t]]);
+            if (right[t] >= 0)
+                m = Math.max(m, maxHigh[right[t]]);
+            maxHigh[t] = m;
+        }
+    }
+
+    // Entry point counting the overlapping pairs among random rectangles and random triangles, and checking
+    // the smaller sizes against the quadratic loop
+    public static void main(String[] args) {
+        for (int n : Bench.sizes(args, 0)) {
+            int[][][] rectanglesArray = Bench.randomRectangles(n, 42);
+            int[][][] trianglesArray = Bench.randomTriangles(n, 43);
+            long start = System.nanoTime();
+            long boxPairs = boxes(n, (i, box) -> {
+                int[][] r = rectanglesArray[i];
+                box[0] = Math.min(r[0][0], r[2][0]);
+                box[1] = Math.min(r[0][1], r[2][1]);
+                box[2] = Math.max(r[0][0], r[2][0]);
+                box[3] = Math.max(r[0][1], r[2][1]);
+            }, null);
+            long boxNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            long trianglePairs = exact(trianglesArray, null);
+            long triangleNanos = System.nanoTime() - start;
+            String check = "";
+            if (n <= 20_000) {
+                long expectedBoxes = 0;
+                long expectedTriangles = 0;
+                for (int i = 0; i < n; i++) {
+                    for (int j = i + 1; j < n; j++) {
+                        if (intersect(rectanglesArray[i], rectanglesArray[j]))
+                            expectedBoxes++;
+                        if (intersect(trianglesArray[i], trianglesArray[j]))
+                            expectedTriangles++;
+                    }
+                }
+                check = expectedBoxes == boxPairs && expectedTriangles == trianglePairs
+                        ? ", matches the quadratic loop" : ", DIFFERS from the quadratic loop";
+            }
+            System.out.printf("%,d rectangles: %,d overlapping pairs in %.1f ms; %,d triangles: %,d pairs in %.1f ms%s%n",
+                    n, boxPairs, boxNanos / 1e6, n, trianglePairs, triangleNanos / 1e6, check);
+        }
+    }
+}
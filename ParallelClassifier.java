@@ -0,0 +1,145 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntPredicate;
+
+// Class 'ParallelClassifier' splitting a classification scan over shape indices into fork-join tasks
+class ParallelClassifier {
+    // Default number of shapes below which a range is classified on the calling thread
+    public static final int DEFAULT_THRESHOLD = Integer.getInteger("shapes.parallel.threshold", 8192);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    // Constructor using the common fork-join pool and the default threshold
+    public ParallelClassifier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    // Constructor using the common fork-join pool and a custom threshold
+    public ParallelClassifier(int threshold) {
+        this(ForkJoinPool.commonPool(), threshold);
+    }
+
+    // Constructor to initialize the classifier with a pool and the size of the smallest task
+    public ParallelClassifier(ForkJoinPool pool, int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    // Getter method to retrieve the parallelism threshold
+    public int getThreshold() {
+        return threshold;
+    }
+
+    // Method returning, in ascending order, every index in [0, size) for which 'test' is true
+    public int[] select(int size, IntPredicate test) {
+        Matches matches;
+        if (size <= threshold) {
+            matches = scan(0, size, test);
+        } else {
+            matches = pool.invoke(new SelectTask(0, size, test, threshold));
+        }
+        return matches.toArray();
+    }
+
+    // Method to classify a range on the current thread into a single buffer
+    static Matches scan(int from, int to, IntPredicate test) {
+        Matches matches = new Matches();
+        Chunk chunk = new Chunk(Math.min(to - from, 1024));
+        matches.append(chunk);
+        for (int i = from; i < to; i++) {
+            if (test.test(i)) {
+                if (chunk.count == chunk.indices.length) {
+                    chunk = new Chunk(Math.min(chunk.indices.length * 2, to - i));
+                    matches.append(chunk);
+                }
+                chunk.indices[chunk.count++] = i;
+            }
+        }
+        return matches;
+    }
+
+    // Fork-join task that halves its range until it falls under the threshold; ForkJoinTask is
+    // Serializable, but tasks are never serialized
+    @SuppressWarnings("serial")
+    private static final class SelectTask extends RecursiveTask<Matches> {
+        private final int from;
+        private final int to;
+        private final IntPredicate test;
+        private final int threshold;
+
+        SelectTask(int from, int to, IntPredicate test, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.test = test;
+            this.threshold = threshold;
+        }
+
+        protected Matches compute() {
+            if (to - from <= threshold) {
+                return scan(from, to, test);
+            }
+            int mid = (from + to) >>> 1;
+            SelectTask left = new SelectTask(from, mid, test, threshold);
+            SelectTask right = new SelectTask(mid, to, test, threshold);
+            left.fork();
+            Matches after = right.compute();
+            Matches before = left.join();
+            // Left half first, so the merged indices stay in their original order
+            before.append(after);
+            return before;
+        }
+    }
+
+    // Per-worker buffer of matching indices
+    static final class Chunk {
+        final int[] indices;
+        int count;
+        Chunk next;
+
+        Chunk(int capacity) {
+            indices = new int[Math.max(capacity, 1)];
+        }
+    }
+
+    // Ordered list of buffers that can be concatenated in constant time
+    static final class Matches {
+        private Chunk head;
+        private Chunk tail;
+
+        // Method to add one buffer at the end of the list
+        void append(Chunk chunk) {
+            if (head == null)
+                head = chunk;
+            else
+                tail.next = chunk;
+            tail = chunk;
+        }
+
+        // Method to move all buffers of 'other' to the end of this list
+        void append(Matches other) {
+            if (other.head == null)
+                return;
+            append(other.head);
+            tail = other.tail;
+        }
+
+        // Method to copy every buffered index into a single array
+        int[] toArray() {
+            int total = 0;
+            for (Chunk c = head; c != null; c = c.next) {
+                total += c.count;
+            }
+            int[] result = new int[total];
+            int at = 0;
+            for (Chunk c = head; c != null; c = c.next) {
+                System.arraycopy(c.indices, 0, result, at, c.count);
+                at += c.count;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'PointPool' interning vertices so every distinct (x, y) maps to one canonical point or int id.
+// Coordinates are packed into a long and looked up in an open-addressing table of primitive keys,
+// so a lookup allocates nothing; a point is only created, through the pool's factory, the first time
+// its coordinate is interned. The point type is a parameter because every ShapesN variant has its own
+// Point class, e.g. new PointPool<>(n, Point::new). Points are immutable, which makes sharing them
+// between shapes safe and lets interned points be compared with ==. A pool is not thread-safe
+class PointPool<P> {
+    private static final int EMPTY = 0;
+
+    // Open-addressing table: 'keys' holds packed coordinates, 'slots' holds id + 1 (0 = empty slot)
+    private long[] keys;
+    private int[] slots;
+    private int mask;
+
+    // Coordinates and canonical points by id, in first-seen order
+    private long[] packed;
+    private Object[] points;
+    private int size;
+    private final Factory<? extends P> factory;
+
+    private long lookups;
+    private long hits;
+
+    // Functional interface creating the canonical point for a coordinate, usually a Point constructor
+    interface Factory<P> {
+        P create(int x, int y);
+    }
+
+    // Constructor to create an empty pool
+    public PointPool(Factory<? extends P> factory) {
+        this(16, factory);
+    }
+
+    // Constructor to create a pool sized for about 'expected' distinct points without rehashing
+    public PointPool(int expected, Factory<? extends P> factory) {
+        this.factory = Objects.requireNonNull(factory, "factory");
+        int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+        keys = new long[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+        packed = new long[Math.max(expected, 4)];
+        points = new Object[packed.length];
+    }
+
+    // Method to return the id of (x, y), assigning the next id when the point is new
+    public int id(int x, int y) {
+        long key = pack(x, y);
+        lookups++;
+        int i = hash(key) & mask;
+        while (slots[i] != EMPTY) {
+            if (keys[i] == key) {
+                hits++;
+                return slots[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size == packed.length) {
+            packed = Arrays.copyOf(packed, size * 2);
+            points = Arrays.copyOf(points, size * 2);
+        }
+        int id = size++;
+        packed[id] = key;
+        keys[i] = key;
+        slots[i] = id + 1;
+        if (size * 2 > slots.length)
+            rehash();
+        return id;
+    }
+
+    // Method to return the canonical point for (x, y)
+    public P intern(int x, int y) {
+        return point(id(x, y));
+    }
+
+    // Method to return the canonical point for an id handed out by id(); only the factory stores into
+    // 'points', so the cast is safe
+    @SuppressWarnings("unchecked")
+    public P point(int id) {
+        checkId(id);
+        P p = (P) points[id];
+        if (p == null) {
+            p = factory.create(getX(id), getY(id));
+            points[id] = p;
+        }
+        return p;
+    }
+
+    // Getter methods to retrieve the coordinates of an id without creating a point
+    public int getX(int id) {
+        checkId(id);
+        return (int) (packed[id] >> 32);
+    }
+
+    public int getY(int id) {
+        checkId(id);
+        return (int) packed[id];
+    }
+
+    // Method to convert a 3D array of coordinates into vertex ids, shape after shape:
+    // vertex v of shape i gets ids[i * vertices + v]. The RectangleBatch and TriangleBatch
+    // constructors taking a pool and ids build batches straight from the result
+    public int[] ids(int[][][] shapesArray) {
+        int vertices = shapesArray.length == 0 ? 0 : shapesArray[0].length;
+        int[] ids = new int[shapesArray.length * vertices];
+        for (int i = 0; i < shapesArray.length; i++) {
+            if (shapesArray[i].length != vertices)
+                throw new IllegalArgumentException("Shape " + i + " has " + shapesArray[i].length
+                        + " vertices, expected " + vertices);
+            for (int v = 0; v < vertices; v++) {
+                ids[i * vertices + v] = id(shapesArray[i][v][0], shapesArray[i][v][1]);
+            }
+        }
+        return ids;
+    }
+
+    // Getter method to retrieve the number of distinct points in the pool
+    public int size() {
+        return size;
+    }
+
+    // Getter methods to retrieve the hit-rate statistics: lookups, lookups that found an existing point,
+    // and their ratio (the share of vertices that did not need a point of their own)
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    // Method to reset the hit-rate statistics, keeping the interned points
+    public void resetStatistics() {
+        lookups = 0;
+        hits = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PointPool[points=%d, lookups=%d, hits=%d, hitRate=%.1f%%]",
+                size, lookups, hits, 100 * getHitRate());
+    }
+
+    // Helper doubling the table and reinserting every key; ids do not change
+    private void rehash() {
+        int capacity = slots.length * 2;
+        long[] newKeys = new long[capacity];
+        int[] newSlots = new int[capacity];
+        int newMask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            long key = packed[id];
+            int i = hash(key) & newMask;
+            while (newSlots[i] != EMPTY) {
+                i = (i + 1) & newMask;
+            }
+            newKeys[i] = key;
+            newSlots[i] = id + 1;
+        }
+        keys = newKeys;
+        slots = newSlots;
+        mask = newMask;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("Point id " + id + " of " + size);
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    // Helper spreading the packed coordinates over the table (the 64-bit MurmurHash3 finalizer),
+    // so neighbouring grid points do not land in neighbouring slots
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93e1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
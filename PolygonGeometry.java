@@ -0,0 +1,386 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'PolygonGeometry' with the Polygon computations of Shapes3 and Shapes4, working directly on packed
+// vertex arrays {x0, y0, x1, y1, ...} so no Point is created per vertex or edge
+final class PolygonGeometry {
+    private PolygonGeometry() {
+    }
+
+    // Method returning 'v' after checking it holds at least three {x,y} pairs
+    static int[] checkVertices(int[] v) {
+        if (v.length < 6 || v.length % 2 != 0)
+            throw new IllegalArgumentException("A polygon needs at least 3 {x,y} pairs, got " + v.length + " ints");
+        return v;
+    }
+
+    // Method packing {{x,y},...} into {x0, y0, x1, y1, ...}
+    static int[] pack(int[][] points) {
+        int[] packed = new int[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            packed[2 * i] = points[i][0];
+            packed[2 * i + 1] = points[i][1];
+        }
+        return packed;
+    }
+
+    // Method returning twice the signed area (positive when the vertices run counter-clockwise) with a
+    // single-pass shoelace sum. Vertices are taken relative to the first one and summed in long arithmetic,
+    // which wraps consistently, so the result is exact whenever it fits in a long: always the case for
+    // coordinates within +/-2^30
+    static long twiceSignedArea(int[] v) {
+        int n = v.length / 2;
+        long x0 = v[0];
+        long y0 = v[1];
+        long sum = 0;
+        long px = 0;
+        long py = 0;
+        for (int i = 1; i < n; i++) {
+            long x = v[2 * i] - x0;
+            long y = v[2 * i + 1] - y0;
+            sum += px * y - x * py;
+            px = x;
+            py = y;
+        }
+        // Closing edge back to the first vertex, which sits at the origin, adds nothing
+        return sum;
+    }
+
+    // Method returning the area of a simple polygon with the shoelace formula
+    static double area(int[] v) {
+        return Math.abs(twiceSignedArea(v) / 2.0);
+    }
+
+    // Method returning the perimeter, closing edge included; edges are measured in double, so vertices
+    // anywhere in the int range cannot overflow it
+    static double perimeter(int[] v) {
+        int n = v.length / 2;
+        double sum = 0;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            sum += ShapeBatch.distance(v[2 * j], v[2 * j + 1], v[2 * i], v[2 * i + 1]);
+        }
+        return sum;
+    }
+
+    // Method to check in O(n) whether the polygon is convex: no repeated vertices, every turn goes the same
+    // way (straight continuations allowed) and the boundary winds around only once, which rules out stars
+    static boolean isConvex(int[] v) {
+        int n = v.length / 2;
+        if (n < 3)
+            return false;
+        int turn = 0;
+        int xFlips = 0;
+        int yFlips = 0;
+        int xDirection = 0;
+        int yDirection = 0;
+        for (int i = 0; i < n; i++) {
+            int a = 2 * i;
+            int b = 2 * ((i + 1) % n);
+            int c = 2 * ((i + 2) % n);
+            if (v[a] == v[b] && v[a + 1] == v[b + 1])
+                return false;
+            int o = ExactPredicates.orientation(v[a], v[a + 1], v[b], v[b + 1], v[c], v[c + 1]);
+            if (o != 0) {
+                if (turn != 0 && o != turn)
+                    return false;
+                turn = o;
+            } else if (ExactPredicates.signOfSum((long) v[b] - v[a], (long) v[c] - v[b],
+                    (long) v[b + 1] - v[a + 1], (long) v[c + 1] - v[b + 1]) < 0) {
+                // Collinear but doubling back over the previous edge
+                return false;
+            }
+            // A convex boundary changes horizontal and vertical direction exactly twice each
+            int dx = Integer.compare(v[b], v[a]);
+            int dy = Integer.compare(v[b + 1], v[a + 1]);
+            if (dx != 0) {
+                if (xDirection != 0 && dx != xDirection)
+                    xFlips++;
+                xDirection = dx;
+            }
+            if (dy != 0) {
+                if (yDirection != 0 && dy != yDirection)
+                    yFlips++;
+                yDirection = dy;
+            }
+        }
+        // Counted from edge 0 rather than around the loop, two flips show up as one or two, four as three or more
+        return turn != 0 && xFlips <= 2 && yFlips <= 2;
+    }
+
+    // Method to write the bounding box of the polygon into 'box' as {minX, minY, maxX, maxY}
+    static void getBounds(int[] v, int[] box) {
+        box[0] = box[2] = v[0];
+        box[1] = box[3] = v[1];
+        for (int i = 2; i < v.length; i += 2) {
+            box[0] = Math.min(box[0], v[i]);
+            box[1] = Math.min(box[1], v[i + 1]);
+            box[2] = Math.max(box[2], v[i]);
+            box[3] = Math.max(box[3], v[i + 1]);
+        }
+    }
+
+    // Methods to print the coordinates of every vertex to System.out or a ShapeWriter
+    static void print(int[] v) {
+        for (int i = 0; i < v.length; i += 2) {
+            ShapeBatch.printPoint(v[i], v[i + 1]);
+        }
+    }
+
+    static void print(int[] v, ShapeWriter out) {
+        out.beginShape(v.length / 2);
+        for (int i = 0; i < v.length; i += 2) {
+            out.writePoint(v[i], v[i + 1]);
+        }
+    }
+
+    // Method to check whether the polygon is simple: no two edges meet except neighbouring edges at their
+    // shared vertex. Uses the Shamos-Hoey sweep, O(n log n), stopping at the first intersection
+    static boolean isSimple(int[] v) {
+        int n = v.length / 2;
+        if (n < 3)
+            return false;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            if (v[2 * i] == v[2 * j] && v[2 * i + 1] == v[2 * j + 1])
+                return false;
+        }
+        // Vertices are ranked in (x, y) order by sorting packed keys, y offset to sort as unsigned; equal
+        // points share a rank
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) v[2 * i] << 32) | ((v[2 * i + 1] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+        }
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[i] = Arrays.binarySearch(sorted, keys[i]);
+        }
+        // Edge e runs from vertex e to vertex e + 1; its "left" end is the lexicographically smaller one
+        int[] left = new int[n];
+        int[] right = new int[n];
+        for (int e = 0; e < n; e++) {
+            int a = e;
+            int b = (e + 1) % n;
+            boolean forward = rank[a] < rank[b];
+            left[e] = forward ? a : b;
+            right[e] = forward ? b : a;
+        }
+        // Event = rank of the point in the high half, then 0 to insert edge e at its left end or 1 to
+        // remove it at its right end, then e: sorting the longs puts insertions first at the same point,
+        // so edges that only touch there still meet in the status
+        long[] events = new long[2 * n];
+        for (int e = 0; e < n; e++) {
+            events[2 * e] = ((long) rank[left[e]] << 32) | e;
+            events[2 * e + 1] = ((long) rank[right[e]] << 32) | (1L << 31) | e;
+        }
+        Arrays.sort(events);
+        Status status = new Status(v, left, right);
+        for (long event : events) {
+            int e = (int) (event & 0x7FFFFFFF);
+            if ((event & (1L << 31)) == 0) {
+                status.insert(e);
+                int lower = status.lower(e);
+                int upper = status.higher(e);
+                if ((lower >= 0 && meet(v, n, e, lower)) || (upper >= 0 && meet(v, n, e, upper)))
+                    return false;
+            } else {
+                int lower = status.lower(e);
+                int upper = status.higher(e);
+                status.remove(e);
+                if (lower >= 0 && upper >= 0 && meet(v, n, lower, upper))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // Helper ordering two overlapping edges in the sweep: negative when edge p lies below edge q
+    private static int below(int[] v, int[] left, int[] right, int p, int q) {
+        // Test the edge that starts later against the line through the one that starts earlier
+        int pl = left[p];
+        int ql = left[q];
+        boolean pFirst = v[2 * pl] < v[2 * ql] || (v[2 * pl] == v[2 * ql] && v[2 * pl + 1] <= v[2 * ql + 1]);
+        int base = pFirst ? p : q;
+        int other = pFirst ? q : p;
+        int a = left[base];
+        int b = right[base];
+        int o = ExactPredicates.orientation(v[2 * a], v[2 * a + 1], v[2 * b], v[2 * b + 1],
+                v[2 * left[other]], v[2 * left[other] + 1]);
+        if (o == 0)
+            o = ExactPredicates.orientation(v[2 * a], v[2 * a + 1], v[2 * b], v[2 * b + 1],
+                    v[2 * right[other]], v[2 * right[other] + 1]);
+        // o > 0: 'other' lies above 'base'
+        return pFirst ? -o : o;
+    }
+
+    // Helper checking whether edges e and f meet in a way a simple polygon does not allow
+    private static boolean meet(int[] v, int n, int e, int f) {
+        int e1 = e;
+        int e2 = (e + 1) % n;
+        int f1 = f;
+        int f2 = (f + 1) % n;
+        // Neighbouring edges share a vertex; they only conflict if they fold back onto each other
+        if (e2 == f1 || f2 == e1) {
+            int shared = e2 == f1 ? e2 : e1;
+            int a = shared == e2 ? e1 : e2;
+            int b = shared == e2 ? f2 : f1;
+            if (orientation(v, shared, a, b) != 0)
+                return false;
+            // Collinear: they overlap when both run away from the shared vertex in the same direction
+            long ux = (long) v[2 * a] - v[2 * shared];
+            long uy = (long) v[2 * a + 1] - v[2 * shared + 1];
+            long wx = (long) v[2 * b] - v[2 * shared];
+            long wy = (long) v[2 * b + 1] - v[2 * shared + 1];
+            return ExactPredicates.signOfSum(ux, wx, uy, wy) > 0;
+        }
+        return intersect(v, e1, e2, f1, f2);
+    }
+
+    // Helper checking whether the closed segments a-b and c-d have any point in common
+    private static boolean intersect(int[] v, int a, int b, int c, int d) {
+        int o1 = orientation(v, a, b, c);
+        int o2 = orientation(v, a, b, d);
+        int o3 = orientation(v, c, d, a);
+        int o4 = orientation(v, c, d, b);
+        if (o1 * o2 < 0 && o3 * o4 < 0)
+            return true;
+        return (o1 == 0 && onSegment(v, a, b, c)) || (o2 == 0 && onSegment(v, a, b, d))
+            || (o3 == 0 && onSegment(v, c, d, a)) || (o4 == 0 && onSegment(v, c, d, b));
+    }
+
+    private static int orientation(int[] v, int a, int b, int c) {
+        return ExactPredicates.orientation(v[2 * a], v[2 * a + 1], v[2 * b], v[2 * b + 1], v[2 * c], v[2 * c + 1]);
+    }
+
+    // Helper checking whether vertex p, already known to be collinear with a-b, lies within the segment
+    private static boolean onSegment(int[] v, int a, int b, int p) {
+        return Math.min(v[2 * a], v[2 * b]) <= v[2 * p] && v[2 * p] <= Math.max(v[2 * a], v[2 * b])
+            && Math.min(v[2 * a + 1], v[2 * b + 1]) <= v[2 * p + 1] && v[2 * p + 1] <= Math.max(v[2 * a + 1], v[2 * b + 1]);
+    }
+
+    // Class 'Status' holding the edges the sweep currently crosses, bottom to top, in a treap whose nodes
+    // are edge indices in parallel int arrays (-1 for none). Non-crossing edges keep one order for as long
+    // as both are active, so comparing with orientation tests at insertion is consistent
+    private static final class Status {
+        private final int[] v;
+        private final int[] leftEnd;
+        private final int[] rightEnd;
+        private final int[] left;
+        private final int[] right;
+        private final int[] priority;
+        private int root = -1;
+
+        Status(int[] v, int[] leftEnd, int[] rightEnd) {
+            int n = leftEnd.length;
+            this.v = v;
+            this.leftEnd = leftEnd;
+            this.rightEnd = rightEnd;
+            left = new int[n];
+            right = new int[n];
+            priority = new int[n];
+            SplittableRandom random = new SplittableRandom(n);
+            for (int i = 0; i < n; i++) {
+                priority[i] = random.nextInt();
+            }
+        }
+
+        void insert(int e) {
+            root = insert(root, e);
+        }
+
+        void remove(int e) {
+            root = remove(root, e);
+        }
+
+        // Methods returning the active edge just below or just above active edge 'e', or -1
+        int lower(int e) {
+            int found = -1;
+            for (int t = root; t >= 0; ) {
+                if (compare(t, e) < 0) {
+                    found = t;
+                    t = right[t];
+                } else {
+                    t = left[t];
+                }
+            }
+            return found;
+        }
+
+        int higher(int e) {
+            int found = -1;
+            for (int t = root; t >= 0; ) {
+                if (compare(t, e) > 0) {
+                    found = t;
+                    t = left[t];
+                } else {
+                    t = right[t];
+                }
+            }
+            return found;
+        }
+
+        private int insert(int t, int e) {
+            if (t < 0) {
+                left[e] = -1;
+                right[e] = -1;
+                return e;
+            }
+            if (compare(e, t) < 0) {
+                left[t] = insert(left[t], e);
+                if (priority[left[t]] > priority[t])
+                    t = rotateRight(t);
+            } else {
+                right[t] = insert(right[t], e);
+                if (priority[right[t]] > priority[t])
+                    t = rotateLeft(t);
+            }
+            return t;
+        }
+
+        private int remove(int t, int e) {
+            if (t == e)
+                return merge(left[t], right[t]);
+            if (compare(e, t) < 0)
+                left[t] = remove(left[t], e);
+            else
+                right[t] = remove(right[t], e);
+            return t;
+        }
+
+        private int merge(int a, int b) {
+            if (a < 0)
+                return b;
+            if (b < 0)
+                return a;
+            if (priority[a] > priority[b]) {
+                right[a] = merge(right[a], b);
+                return a;
+            }
+            left[b] = merge(a, left[b]);
+            return b;
+        }
+
+        private int rotateRight(int t) {
+            int l = left[t];
+            left[t] = right[l];
+            right[l] = t;
+            return l;
+        }
+
+        private int rotateLeft(int t) {
+            int r = right[t];
+            right[t] = left[r];
+            left[r] = t;
+            return r;
+        }
+
+        // Edges are ordered bottom to top, ties by edge index, so every edge has a unique position
+        private int compare(int p, int q) {
+            if (p == q)
+                return 0;
+            int c = below(v, leftEnd, rightEnd, p, q);
+            return c != 0 ? c : Integer.compare(p, q);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'QuantileSketch' estimating quantiles (median, p99, ...) of a stream of doubles, such as
+// getPerimeter over every triangle, in memory that grows only with the logarithm of the stream length.
+// It is a KLL sketch: values land in level 0; when a level outgrows its capacity it is sorted and every
+// other value (starting at a random one of the first two) moves up a level, where it stands for twice as
+// many inputs. Capacities shrink by 2/3 per level below the top, so with the default k = 200 a sketch of a
+// billion values keeps at most a few hundred of them and answers rank queries to within about 1.5% of the count.
+// Sketches built on different threads merge into one with the same guarantee
+final class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long random = 0x9E3779B97F4A7C15L;
+
+    // Constructor using the default accuracy parameter
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    // Constructor with accuracy parameter 'k': the rank error falls roughly as 1/k, the memory grows as k
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY)
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+        this.k = k;
+        levels[0] = new double[k];
+    }
+
+    // Method to add one value; NaN values are ignored
+    public void add(double value) {
+        if (value != value)
+            return;
+        if (sizes[0] == levels[0].length)
+            levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+        levels[0][sizes[0]++] = value;
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (sizes[0] >= capacity(0))
+            compress();
+    }
+
+    // Method to add values[0..n), e.g. the output of TriangleBatch.getPerimeters for one chunk of a stream
+    public void addAll(double[] values, int n) {
+        for (int i = 0; i < n; i++) {
+            add(values[i]);
+        }
+    }
+
+    // Method to fold another sketch into this one; the other sketch is left unchanged
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.count == 0)
+            return this;
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            int n = other.sizes[h];
+            if (sizes[h] + n > levels[h].length)
+                levels[h] = Arrays.copyOf(levels[h], Math.max(2 * levels[h].length, sizes[h] + n));
+            System.arraycopy(other.levels[h], 0, levels[h], sizes[h], n);
+            sizes[h] += n;
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+        return this;
+    }
+
+    // Getter methods to retrieve the number of values added and the exact extremes
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    // Method returning the estimated value below which a fraction 'q' (0 to 1) of the values fall,
+    // e.g. quantile(0.5) for the median; the extremes are exact. NaN when the sketch is empty
+    public double quantile(double q) {
+        if (q < 0 || q > 1)
+            throw new IllegalArgumentException("Quantile must be within [0, 1]: " + q);
+        if (count == 0)
+            return Double.NaN;
+        if (q == 0)
+            return min;
+        if (q == 1)
+            return max;
+        Sorted sorted = sorted();
+        long rank = (long) Math.ceil(q * count);
+        for (int i = 0; i < sorted.values.length; i++) {
+            if (sorted.cumulative[i] >= rank)
+                return sorted.values[i];
+        }
+        return max;
+    }
+
+    // Method returning the quantiles for several fractions at once, sorting the retained values only once
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        Sorted sorted = count == 0 ? null : sorted();
+        for (int j = 0; j < qs.length; j++) {
+            double q = qs[j];
+            if (q < 0 || q > 1)
+                throw new IllegalArgumentException("Quantile must be within [0, 1]: " + q);
+            if (sorted == null) {
+                result[j] = Double.NaN;
+                continue;
+            }
+            long rank = (long) Math.ceil(q * count);
+            int i = 0;
+            while (i < sorted.values.length - 1 && sorted.cumulative[i] < rank) {
+                i++;
+            }
+            result[j] = q == 0 ? min : q == 1 ? max : sorted.values[i];
+        }
+        return result;
+    }
+
+    // Method returning the estimated fraction of values less than or equal to 'value'
+    public double rank(double value) {
+        if (count == 0)
+            return Double.NaN;
+        long weight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value)
+                    weight += 1L << h;
+            }
+        }
+        return (double) weight / count;
+    }
+
+    // Getter method to retrieve the number of values the sketch currently keeps
+    public int retained() {
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            n += sizes[h];
+        }
+        return n;
+    }
+
+    // Helper returning the capacity of level 'h': k at the top level, 2/3 of it for each level below
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3, depth)));
+    }
+
+    // Helper compacting levels, lowest first, until every level is within its capacity
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h))
+                continue;
+            if (h == levels.length - 1)
+                grow();
+            double[] level = levels[h];
+            int n = sizes[h];
+            Arrays.sort(level, 0, n);
+            // With an odd count the smallest value stays behind in slot 0; of every pair above it one value moves up
+            int pairs = n / 2;
+            int offset = nextBit();
+            int above = sizes[h + 1];
+            if (above + pairs > levels[h + 1].length)
+                levels[h + 1] = Arrays.copyOf(levels[h + 1], Math.max(2 * levels[h + 1].length, above + pairs));
+            for (int p = 0; p < pairs; p++) {
+                levels[h + 1][above + p] = level[(n & 1) + 2 * p + offset];
+            }
+            sizes[h + 1] = above + pairs;
+            sizes[h] = n & 1;
+        }
+    }
+
+    private void grow() {
+        int h = levels.length;
+        levels = Arrays.copyOf(levels, h + 1);
+        sizes = Arrays.copyOf(sizes, h + 1);
+        levels[h] = new double[capacity(h)];
+    }
+
+    // Helper returning 0 or 1 from a xorshift generator; a fixed seed keeps sketches reproducible
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+
+    // Helper listing the retained values in order with the cumulative weight up to each
+    private Sorted sorted() {
+        int n = retained();
+        double[] values = new double[n];
+        int[] heights = new int[n];
+        int at = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[at] = levels[h][i];
+                heights[at++] = h;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        Sorted sorted = new Sorted(n);
+        long weight = 0;
+        for (int r = 0; r < n; r++) {
+            weight += 1L << heights[order[r]];
+            sorted.values[r] = values[order[r]];
+            sorted.cumulative[r] = weight;
+        }
+        return sorted;
+    }
+
+    // Class 'Sorted' holding the retained values in ascending order with their cumulative weights
+    private static final class Sorted {
+        final double[] values;
+        final long[] cumulative;
+
+        Sorted(int n) {
+            values = new double[n];
+            cumulative = new long[n];
+        }
+    }
+
+    // Entry point estimating triangle perimeter quantiles of a random stream chunk by chunk, with one
+    // sketch per chunk merged at the end, and comparing them with a full sort
+    public static void main(String[] args) {
+        int chunk = 1 << 16;
+        double[] qs = { 0.01, 0.25, 0.5, 0.75, 0.99 };
+        for (int n : Bench.sizes(args, 0)) {
+            int[][][] trianglesArray = Bench.randomTriangles(n, 43);
+            long start = System.nanoTime();
+            QuantileSketch sketch = new QuantileSketch();
+            double[] perimeters = new double[chunk];
+            for (int from = 0; from < n; from += chunk) {
+                int to = Math.min(n, from + chunk);
+                new TriangleBatch(Arrays.copyOfRange(trianglesArray, from, to)).getPerimeters(perimeters);
+                QuantileSketch partial = new QuantileSketch();
+                partial.addAll(perimeters, to - from);
+                sketch.merge(partial);
+            }
+            double[] estimates = sketch.quantiles(qs);
+            long nanos = System.nanoTime() - start;
+            double[] all = new double[n];
+            new TriangleBatch(trianglesArray).getPerimeters(all);
+            Arrays.sort(all);
+            StringBuilder line = new StringBuilder(String.format("%,d triangles, %d values kept, %.3f ms:",
+                    n, sketch.retained(), nanos / 1e6));
+            for (int j = 0; j < qs.length; j++) {
+                double exact = all[Math.max(0, (int) Math.ceil(qs[j] * n) - 1)];
+                line.append(String.format(" p%s %.2f (exact %.2f)", qs[j] * 100, estimates[j], exact));
+            }
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,474 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+// Class 'RTree' indexing shapes by their bounding boxes for window, containment and nearest queries.
+// Entries are int ids (normally the shape's index in its array) with an {minX, minY, maxX, maxY} box
+class RTree {
+    // Functional interface supplying the bounding box of shape 'i', e.g. Rectangle.getBounds
+    interface Bounds {
+        void getBounds(int i, int[] box);
+    }
+
+    static final int MAX_ENTRIES = 16;
+    static final int MIN_ENTRIES = 6;
+
+    private Node root = new Node(true);
+    private int size;
+
+    // Method to bulk-load 'n' shapes with Sort-Tile-Recursive packing; best for static datasets
+    public static RTree bulkLoad(int n, Bounds bounds) {
+        RTree tree = new RTree();
+        if (n == 0)
+            return tree;
+        int[] box = new int[4];
+        int[] minX = new int[n];
+        int[] minY = new int[n];
+        int[] maxX = new int[n];
+        int[] maxY = new int[n];
+        for (int i = 0; i < n; i++) {
+            bounds.getBounds(i, box);
+            minX[i] = box[0];
+            minY[i] = box[1];
+            maxX[i] = box[2];
+            maxY[i] = box[3];
+        }
+        // Leaves first, then one level of parents at a time until a single root remains
+        Node[] level = pack(null, n, minX, minY, maxX, maxY);
+        while (level.length > 1) {
+            minX = new int[level.length];
+            minY = new int[level.length];
+            maxX = new int[level.length];
+            maxY = new int[level.length];
+            for (int i = 0; i < level.length; i++) {
+                Node node = level[i];
+                minX[i] = node.minX();
+                minY[i] = node.minY();
+                maxX[i] = node.maxX();
+                maxY[i] = node.maxY();
+            }
+            level = pack(level, level.length, minX, minY, maxX, maxY);
+        }
+        tree.root = level[0];
+        tree.size = n;
+        return tree;
+    }
+
+    // Helper packing one level of 'n' items: sort by x centre, cut into vertical slices, sort slices by
+    // y centre. The items are the nodes in 'children', or shape ids 0 to n - 1 when it is null
+    private static Node[] pack(Node[] children, int n, int[] minX, int[] minY, int[] maxX, int[] maxY) {
+        boolean leaves = children == null;
+        int nodes = (n + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int perSlice = slices * MAX_ENTRIES;
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = centreKey(minX[i], maxX[i], i);
+        }
+        Arrays.sort(order);
+        for (int from = 0; from < n; from += perSlice) {
+            int sliceEnd = Math.min(from + perSlice, n);
+            for (int k = from; k < sliceEnd; k++) {
+                int i = index(order[k]);
+                order[k] = centreKey(minY[i], maxY[i], i);
+            }
+            Arrays.sort(order, from, sliceEnd);
+        }
+        Node[] parents = new Node[nodes];
+        int p = 0;
+        for (int from = 0; from < n; from += perSlice) {
+            int sliceEnd = Math.min(from + perSlice, n);
+            for (int at = from; at < sliceEnd; at += MAX_ENTRIES) {
+                Node node = new Node(leaves);
+                for (int k = at; k < Math.min(at + MAX_ENTRIES, sliceEnd); k++) {
+                    int i = index(order[k]);
+                    if (leaves)
+                        node.add(i, minX[i], minY[i], maxX[i], maxY[i]);
+                    else
+                        node.add(children[i]);
+                }
+                parents[p++] = node;
+            }
+        }
+        return Arrays.copyOf(parents, p);
+    }
+
+    // Helper packing a sort key: the centre min + max (33 bits) above the index (31 bits), so sorting the
+    // keys as plain longs orders by centre, ties by index, without boxing
+    private static long centreKey(int min, int max, int i) {
+        return (((long) min + max) << 31) | i;
+    }
+
+    private static int index(long key) {
+        return (int) (key & 0x7FFFFFFF);
+    }
+
+    // Getter method to retrieve the number of indexed shapes
+    public int size() {
+        return size;
+    }
+
+    // Method to add shape 'id' with the given bounding box
+    public void insert(int id, int minX, int minY, int maxX, int maxY) {
+        Node leaf = root;
+        while (!leaf.leaf) {
+            leaf = leaf.children[leaf.chooseSubtree(minX, minY, maxX, maxY)];
+        }
+        leaf.add(id, minX, minY, maxX, maxY);
+        size++;
+        adjust(leaf);
+    }
+
+    // Method to remove shape 'id', whose bounding box must be the one it was inserted with
+    public boolean delete(int id, int minX, int minY, int maxX, int maxY) {
+        Node leaf = findLeaf(root, id, minX, minY, maxX, maxY);
+        if (leaf == null)
+            return false;
+        for (int k = 0; k < leaf.count; k++) {
+            if (leaf.ids[k] == id) {
+                leaf.remove(k);
+                break;
+            }
+        }
+        size--;
+        condense(leaf);
+        return true;
+    }
+
+    // Method to pass every shape whose box overlaps the window (edges included) to 'action'
+    public void search(int minX, int minY, int maxX, int maxY, IntConsumer action) {
+        search(root, minX, minY, maxX, maxY, action);
+    }
+
+    // Method to pass every shape containing (x, y) to 'action'; 'exact' refines the box test,
+    // e.g. i -> rectangles[i].contains(x, y), and may be null to accept every box hit
+    public void containing(int x, int y, IntPredicate exact, IntConsumer action) {
+        search(root, x, y, x, y, exact == null ? action : i -> {
+            if (exact.test(i))
+                action.accept(i);
+        });
+    }
+
+    // Method to find up to 'k' shapes whose boxes are nearest to (x, y), closest first.
+    // Writes their ids into 'result' and returns how many were found
+    public int nearest(int x, int y, int k, int[] result) {
+        if (k <= 0 || size == 0)
+            return 0;
+        // Best-first search: nodes and entries share one queue keyed by squared box distance
+        Queue queue = new Queue();
+        queue.push(0, root, -1);
+        int found = 0;
+        while (queue.size > 0 && found < k) {
+            Node node = queue.nodes[0];
+            int id = queue.ids[0];
+            queue.pop();
+            if (node == null) {
+                result[found++] = id;
+            } else {
+                for (int c = 0; c < node.count; c++) {
+                    double d = distance(x, y, node.minX[c], node.minY[c], node.maxX[c], node.maxY[c]);
+                    if (node.leaf)
+                        queue.push(d, null, node.ids[c]);
+                    else
+                        queue.push(d, node.children[c], -1);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Helper returning the squared distance from (x, y) to a box, zero when the point is inside
+    static double distance(int x, int y, int minX, int minY, int maxX, int maxY) {
+        long dx = x < minX ? (long) minX - x : x > maxX ? (long) x - maxX : 0;
+        long dy = y < minY ? (long) minY - y : y > maxY ? (long) y - maxY : 0;
+        return (double) dx * dx + (double) dy * dy;
+    }
+
+    private static void search(Node node, int minX, int minY, int maxX, int maxY, IntConsumer action) {
+        for (int c = 0; c < node.count; c++) {
+            if (node.minX[c] <= maxX && minX <= node.maxX[c] && node.minY[c] <= maxY && minY <= node.maxY[c]) {
+                if (node.leaf)
+                    action.accept(node.ids[c]);
+                else
+                    search(node.children[c], minX, minY, maxX, maxY, action);
+            }
+        }
+    }
+
+    private static Node findLeaf(Node node, int id, int minX, int minY, int maxX, int maxY) {
+        for (int c = 0; c < node.count; c++) {
+            if (node.minX[c] <= minX && node.minY[c] <= minY && maxX <= node.maxX[c] && maxY <= node.maxY[c]) {
+                if (node.leaf) {
+                    if (node.ids[c] == id)
+                        return node;
+                } else {
+                    Node leaf = findLeaf(node.children[c], id, minX, minY, maxX, maxY);
+                    if (leaf != null)
+                        return leaf;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Helper splitting overfull nodes and refreshing boxes from 'node' up to the root
+    private void adjust(Node node) {
+        while (node != null) {
+            if (node.count > MAX_ENTRIES) {
+                Node sibling = node.split();
+                if (node.parent == null) {
+                    Node newRoot = new Node(false);
+                    newRoot.add(node);
+                    newRoot.add(sibling);
+                    root = newRoot;
+                    return;
+                }
+                node.parent.add(sibling);
+            }
+            Node parent = node.parent;
+            if (parent != null)
+                parent.refresh(node);
+            node = parent;
+        }
+    }
+
+    // Helper removing underfull nodes after a delete and re-inserting their entries
+    private void condense(Node node) {
+        List<Node> orphans = new ArrayList<>();
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.count < MIN_ENTRIES) {
+                parent.remove(parent.indexOf(node));
+                orphans.add(node);
+            } else {
+                parent.refresh(node);
+            }
+            node = parent;
+        }
+        if (!root.leaf && root.count == 1) {
+            root = root.children[0];
+            root.parent = null;
+        } else if (!root.leaf && root.count == 0) {
+            root = new Node(true);
+        }
+        for (Node orphan : orphans) {
+            reinsert(orphan);
+        }
+    }
+
+    private void reinsert(Node node) {
+        for (int c = 0; c < node.count; c++) {
+            if (node.leaf) {
+                size--;
+                insert(node.ids[c], node.minX[c], node.minY[c], node.maxX[c], node.maxY[c]);
+            } else {
+                reinsert(node.children[c]);
+            }
+        }
+    }
+
+    // Tree node holding up to MAX_ENTRIES child boxes in parallel primitive arrays
+    static final class Node {
+        final boolean leaf;
+        final int[] minX = new int[MAX_ENTRIES + 1];
+        final int[] minY = new int[MAX_ENTRIES + 1];
+        final int[] maxX = new int[MAX_ENTRIES + 1];
+        final int[] maxY = new int[MAX_ENTRIES + 1];
+        final int[] ids;
+        final Node[] children;
+        int count;
+        Node parent;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+            this.ids = leaf ? new int[MAX_ENTRIES + 1] : null;
+            this.children = leaf ? null : new Node[MAX_ENTRIES + 1];
+        }
+
+        void add(int id, int x0, int y0, int x1, int y1) {
+            ids[count] = id;
+            set(count++, x0, y0, x1, y1);
+        }
+
+        void add(Node child) {
+            child.parent = this;
+            children[count] = child;
+            set(count++, child.minX(), child.minY(), child.maxX(), child.maxY());
+        }
+
+        void set(int c, int x0, int y0, int x1, int y1) {
+            minX[c] = x0;
+            minY[c] = y0;
+            maxX[c] = x1;
+            maxY[c] = y1;
+        }
+
+        // Method to drop entry 'c' by moving the last entry into its slot
+        void remove(int c) {
+            int last = --count;
+            if (leaf)
+                ids[c] = ids[last];
+            else
+                children[c] = children[last];
+            set(c, minX[last], minY[last], maxX[last], maxY[last]);
+            if (!leaf)
+                children[last] = null;
+        }
+
+        int indexOf(Node child) {
+            for (int c = 0; c < count; c++) {
+                if (children[c] == child)
+                    return c;
+            }
+            throw new IllegalStateException("Child not found");
+        }
+
+        void refresh(Node child) {
+            set(indexOf(child), child.minX(), child.minY(), child.maxX(), child.maxY());
+        }
+
+        // Method to choose the child whose box grows least when the given box is added
+        int chooseSubtree(int x0, int y0, int x1, int y1) {
+            int best = 0;
+            double bestGrowth = Double.MAX_VALUE;
+            double bestArea = Double.MAX_VALUE;
+            for (int c = 0; c < count; c++) {
+                double area = area(minX[c], minY[c], maxX[c], maxY[c]);
+                double growth = area(Math.min(minX[c], x0), Math.min(minY[c], y0),
+                        Math.max(maxX[c], x1), Math.max(maxY[c], y1)) - area;
+                if (growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+                    best = c;
+                    bestGrowth = growth;
+                    bestArea = area;
+                }
+            }
+            return best;
+        }
+
+        // Method to move half of the entries, ordered along the wider axis, into a new sibling
+        Node split() {
+            boolean byX = (double) maxX() - minX() >= (double) maxY() - minY();
+            long[] order = new long[count];
+            for (int c = 0; c < count; c++) {
+                order[c] = byX ? centreKey(minX[c], maxX[c], c) : centreKey(minY[c], maxY[c], c);
+            }
+            Arrays.sort(order);
+            Node keep = new Node(leaf);
+            Node sibling = new Node(leaf);
+            for (int k = 0; k < order.length; k++) {
+                int c = index(order[k]);
+                Node target = k < order.length / 2 ? keep : sibling;
+                if (leaf)
+                    target.add(ids[c], minX[c], minY[c], maxX[c], maxY[c]);
+                else
+                    target.add(children[c]);
+            }
+            // Keep this node's identity (its parent refers to it) by copying 'keep' back in
+            count = 0;
+            for (int c = 0; c < keep.count; c++) {
+                if (leaf)
+                    add(keep.ids[c], keep.minX[c], keep.minY[c], keep.maxX[c], keep.maxY[c]);
+                else
+                    add(keep.children[c]);
+            }
+            if (!leaf)
+                Arrays.fill(children, count, children.length, null);
+            return sibling;
+        }
+
+        int minX() {
+            int v = Integer.MAX_VALUE;
+            for (int c = 0; c < count; c++) {
+                v = Math.min(v, minX[c]);
+            }
+            return v;
+        }
+
+        int minY() {
+            int v = Integer.MAX_VALUE;
+            for (int c = 0; c < count; c++) {
+                v = Math.min(v, minY[c]);
+            }
+            return v;
+        }
+
+        int maxX() {
+            int v = Integer.MIN_VALUE;
+            for (int c = 0; c < count; c++) {
+                v = Math.max(v, maxX[c]);
+            }
+            return v;
+        }
+
+        int maxY() {
+            int v = Integer.MIN_VALUE;
+            for (int c = 0; c < count; c++) {
+                v = Math.max(v, maxY[c]);
+            }
+            return v;
+        }
+
+        private static double area(int x0, int y0, int x1, int y1) {
+            return ((double) x1 - x0) * ((double) y1 - y0);
+        }
+    }
+
+    // Binary min-heap of (squared distance, node or entry id) used by nearest()
+    private static final class Queue {
+        double[] keys = new double[64];
+        Node[] nodes = new Node[64];
+        int[] ids = new int[64];
+        int size;
+
+        void push(double key, Node node, int id) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int at = size++;
+            while (at > 0) {
+                int up = (at - 1) >>> 1;
+                if (keys[up] <= key)
+                    break;
+                move(up, at);
+                at = up;
+            }
+            keys[at] = key;
+            nodes[at] = node;
+            ids[at] = id;
+        }
+
+        void pop() {
+            int last = --size;
+            double key = keys[last];
+            Node node = nodes[last];
+            int id = ids[last];
+            nodes[last] = null;
+            int at = 0;
+            while (true) {
+                int child = 2 * at + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && keys[child + 1] < keys[child])
+                    child++;
+                if (key <= keys[child])
+                    break;
+                move(child, at);
+                at = child;
+            }
+            if (size > 0) {
+                keys[at] = key;
+                nodes[at] = node;
+                ids[at] = id;
+            }
+        }
+
+        private void move(int from, int to) {
+            keys[to] = keys[from];
+            nodes[to] = nodes[from];
+            ids[to] = ids[from];
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// Importing necessary Java libraries
+import java.lang.Math;
+import java.io.*;
+import java.util.*;
+
+// Definition of the 'RectangleBatch' class storing the four corners of every rectangle column-wise
+class RectangleBatch extends ShapeBatch {
+    final int[] x1;
+    final int[] y1;
+    final int[] x2;
+    final int[] y2;
+    final int[] x3;
+    final int[] y3;
+    final int[] x4;
+    final int[] y4;
+
+    // Constructor to create an empty batch able to hold 'size' rectangles
+    public RectangleBatch(int size) {
+        super(size);
+        x1 = new int[size];
+        y1 = new int[size];
+        x2 = new int[size];
+        y2 = new int[size];
+        x3 = new int[size];
+        y3 = new int[size];
+        x4 = new int[size];
+        y4 = new int[size];
+    }
+
+    // Constructor to copy the rectangles out of the same 3D array the 'main' methods use
+    public RectangleBatch(int[][][] rectanglesArray) {
+        this(rectanglesArray.length);
+        for (int i = 0; i < size; i++) {
+            set(i, rectanglesArray[i]);
+        }
+    }
+
+    // Constructor to gather the rectangles given as vertex ids from PointPool.ids, 4 per shape, reading
+    // each corner's coordinates from the pool without creating a point
+    public RectangleBatch(PointPool<?> pool, int[] ids) {
+        this(ids.length / 4);
+        if (ids.length % 4 != 0)
+            throw new IllegalArgumentException("Vertex id count " + ids.length + " is not a multiple of 4");
+        for (int i = 0; i < size; i++) {
+            x1[i] = pool.getX(ids[4 * i]);
+            y1[i] = pool.getY(ids[4 * i]);
+            x2[i] = pool.getX(ids[4 * i + 1]);
+            y2[i] = pool.getY(ids[4 * i + 1]);
+            x3[i] = pool.getX(ids[4 * i + 2]);
+            y3[i] = pool.getY(ids[4 * i + 2]);
+            x4[i] = pool.getX(ids[4 * i + 3]);
+            y4[i] = pool.getY(ids[4 * i + 3]);
+        }
+    }
+
+    // Method to store the corners of rectangle 'i' from a {{x,y},{x,y},{x,y},{x,y}} array
+    public void set(int i, int[][] vertices) {
+        x1[i] = vertices[0][0];
+        y1[i] = vertices[0][1];
+        x2[i] = vertices[1][0];
+        y2[i] = vertices[1][1];
+        x3[i] = vertices[2][0];
+        y3[i] = vertices[2][1];
+        x4[i] = vertices[3][0];
+        y4[i] = vertices[3][1];
+    }
+
+    // Method to calculate the area of rectangle 'i' from its length and width
+    public double getArea(int i) {
+        double length = distance(x1[i], y1[i], x2[i], y2[i]);
+        double width = distance(x1[i], y1[i], x4[i], y4[i]);
+        return length * width;
+    }
+
+    // Method to calculate the perimeter of rectangle 'i' from its length and width
+    public double getPerimeter(int i) {
+        double length = distance(x1[i], y1[i], x2[i], y2[i]);
+        double width = distance(x1[i], y1[i], x4[i], y4[i]);
+        return 2 * (length + width);
+    }
+
+    // Method to check if rectangle 'i' is a square by comparing its squared length and width
+    public boolean isSquare(int i) {
+        return ExactPredicates.isSquare(x1[i], y1[i], x2[i], y2[i], x4[i], y4[i]);
+    }
+
+    // Methods to calculate the areas and perimeters of all rectangles with the selected BatchKernels
+    public void getAreas(double[] areas) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.RECTANGLE_AREA);
+        BatchKernels.current().rectangleAreas(this, areas);
+        ShapeMetrics.end(run, size);
+    }
+
+    public void getPerimeters(double[] perimeters) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.RECTANGLE_PERIMETER);
+        BatchKernels.current().rectanglePerimeters(this, perimeters);
+        ShapeMetrics.end(run, size);
+    }
+
+    // Method to calculate the squared length (p1-p2) and width (p1-p4) of every rectangle, in double so no
+    // coordinates can overflow them; exact while they are below 2^53
+    public void getSquaredSides(double[] lengths, double[] widths) {
+        BatchKernels.current().rectangleSquaredSides(this, lengths, widths);
+    }
+
+    // Method to flag every square in 'result', returning how many were found
+    public int isSquare(boolean[] result) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.RECTANGLE_SQUARE);
+        int found = BatchKernels.current().squares(this, result);
+        ShapeMetrics.end(run, size);
+        return found;
+    }
+
+    // Method to print the coordinates of the four corners of rectangle 'i'
+    public void print(int i) {
+        printPoint(x1[i], y1[i]);
+        printPoint(x2[i], y2[i]);
+        printPoint(x3[i], y3[i]);
+        printPoint(x4[i], y4[i]);
+    }
+
+    // Method to print the coordinates of the four corners of rectangle 'i' to a ShapeWriter
+    public void print(int i, ShapeWriter out) {
+        out.beginShape(4);
+        out.writePoint(x1[i], y1[i]);
+        out.writePoint(x2[i], y2[i]);
+        out.writePoint(x3[i], y3[i]);
+        out.writePoint(x4[i], y4[i]);
+    }
+}
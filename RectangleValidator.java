@@ -0,0 +1,175 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'RectangleValidator' rejecting quadrilaterals that are not rectangles before they reach
+// getRectangles or a RectangleBatch. p1-p2-p3-p4 is a rectangle exactly when its diagonals bisect each
+// other (p1 + p3 == p2 + p4, a parallelogram), the corner at p1 is right ((p2 - p1) . (p4 - p1) == 0)
+// and no side has zero length. All three tests are integer sums and dot products: no square root,
+// no rounding and no allocation per shape
+final class RectangleValidator {
+    // Reasons, in the order they are tested
+    public static final byte VALID = 0;
+    public static final byte MALFORMED = 1;
+    public static final byte DEGENERATE = 2;
+    public static final byte NOT_PARALLELOGRAM = 3;
+    public static final byte NOT_RIGHT_ANGLED = 4;
+
+    private static final String[] REASONS = { "VALID", "MALFORMED", "DEGENERATE", "NOT_PARALLELOGRAM", "NOT_RIGHT_ANGLED" };
+
+    private RectangleValidator() {
+    }
+
+    // Method returning VALID or the reason the corners p1-p2-p3-p4 do not form a rectangle
+    static byte check(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4) {
+        if ((x1 == x2 && y1 == y2) || (x1 == x4 && y1 == y4))
+            return DEGENERATE;
+        if ((long) x1 + x3 != (long) x2 + x4 || (long) y1 + y3 != (long) y2 + y4)
+            return NOT_PARALLELOGRAM;
+        if (!ExactPredicates.isRightAngle(x1, y1, x2, y2, x4, y4))
+            return NOT_RIGHT_ANGLED;
+        return VALID;
+    }
+
+    // Method returning VALID or the reason a {{x,y},{x,y},{x,y},{x,y}} entry is not a rectangle
+    static byte check(int[][] shape) {
+        if (shape == null || shape.length != 4)
+            return MALFORMED;
+        for (int[] point : shape) {
+            if (point == null || point.length != 2)
+                return MALFORMED;
+        }
+        return check(shape[0][0], shape[0][1], shape[1][0], shape[1][1],
+                shape[2][0], shape[2][1], shape[3][0], shape[3][1]);
+    }
+
+    // Method returning VALID or the reason rectangle 'i' of a batch is not a rectangle
+    static byte check(RectangleBatch b, int i) {
+        return check(b.x1[i], b.y1[i], b.x2[i], b.y2[i], b.x3[i], b.y3[i], b.x4[i], b.y4[i]);
+    }
+
+    // Method to flag every shape of a batch in 'reasons' (VALID or a reason), returning how many were rejected
+    static int flag(RectangleBatch b, byte[] reasons) {
+        int rejected = 0;
+        for (int i = 0; i < b.size(); i++) {
+            reasons[i] = check(b, i);
+            if (reasons[i] != VALID)
+                rejected++;
+        }
+        return rejected;
+    }
+
+    // Method to validate a batch, scanning it in parallel
+    static Report validate(RectangleBatch b, ParallelClassifier classifier) {
+        int[] rejected = classifier.select(b.size(), i -> check(b, i) != VALID);
+        byte[] reasons = new byte[rejected.length];
+        for (int k = 0; k < rejected.length; k++) {
+            reasons[k] = check(b, rejected[k]);
+        }
+        return new Report(b.size(), rejected, reasons);
+    }
+
+    // Method to validate the same 3D coordinate arrays the 'main' methods use, scanning them in parallel
+    static Report validate(int[][][] rectanglesArray, ParallelClassifier classifier) {
+        int[] rejected = classifier.select(rectanglesArray.length, i -> check(rectanglesArray[i]) != VALID);
+        byte[] reasons = new byte[rejected.length];
+        for (int k = 0; k < rejected.length; k++) {
+            reasons[k] = check(rectanglesArray[rejected[k]]);
+        }
+        return new Report(rectanglesArray.length, rejected, reasons);
+    }
+
+    // Method returning the name of a reason, e.g. "NOT_RIGHT_ANGLED"
+    static String reason(byte reason) {
+        return REASONS[reason];
+    }
+
+    // Class 'Report' listing the rejected shapes in ascending index order with their reasons
+    static final class Report {
+        private final int checked;
+        private final int[] rejected;
+        private final byte[] reasons;
+
+        Report(int checked, int[] rejected, byte[] reasons) {
+            this.checked = checked;
+            this.rejected = rejected;
+            this.reasons = reasons;
+        }
+
+        // Getter methods to retrieve the number of shapes checked and rejected
+        public int checked() {
+            return checked;
+        }
+
+        public int rejected() {
+            return rejected.length;
+        }
+
+        // Getter methods to retrieve the index and reason of the k-th rejected shape
+        public int getIndex(int k) {
+            return rejected[k];
+        }
+
+        public byte getReason(int k) {
+            return reasons[k];
+        }
+
+        // Method to count the rejections with a given reason
+        public int count(byte reason) {
+            int count = 0;
+            for (byte r : reasons) {
+                if (r == reason)
+                    count++;
+            }
+            return count;
+        }
+
+        // Method returning the entries of 'rectanglesArray' that passed, ready for getRectangles
+        public int[][][] accepted(int[][][] rectanglesArray) {
+            int[][][] accepted = new int[rectanglesArray.length - rejected.length][][];
+            int k = 0;
+            int a = 0;
+            for (int i = 0; i < rectanglesArray.length; i++) {
+                if (k < rejected.length && rejected[k] == i)
+                    k++;
+                else
+                    accepted[a++] = rectanglesArray[i];
+            }
+            return accepted;
+        }
+
+        // Method to write the report as a summary line plus one line per reason listing the rejected
+        // indices, with consecutive runs collapsed, e.g. "NOT_RIGHT_ANGLED 5: 2,7-10"
+        public void write(ShapeWriter out) {
+            out.writeLine("Rejected " + rejected.length + " of " + checked + " rectangles");
+            for (byte reason = MALFORMED; reason < REASONS.length; reason++) {
+                int count = count(reason);
+                if (count == 0)
+                    continue;
+                StringBuilder line = new StringBuilder(REASONS[reason]).append(' ').append(count).append(": ");
+                int runStart = -1;
+                int previous = -2;
+                boolean first = true;
+                for (int k = 0; k <= rejected.length; k++) {
+                    boolean match = k < rejected.length && reasons[k] == reason;
+                    if (match && rejected[k] == previous + 1) {
+                        previous = rejected[k];
+                        continue;
+                    }
+                    if (!match && k < rejected.length)
+                        continue;
+                    if (runStart >= 0) {
+                        line.append(first ? "" : ",").append(runStart);
+                        if (previous > runStart)
+                            line.append('-').append(previous);
+                        first = false;
+                    }
+                    if (match) {
+                        runStart = rejected[k];
+                        previous = rejected[k];
+                    }
+                }
+                out.writeLine(line.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.concurrent.*;
+
+// Class 'RightTriangles' counting or listing every right triangle whose vertices are three points of a set,
+// in O(n^2) expected time instead of testing all O(n^3) triples. Each point in turn is tried as the right
+// angle: the direction to every other point is reduced by the gcd of its components and turned by quarter
+// turns into the quadrant x > 0, y >= 0, remembering whether an odd number of turns was needed. Two
+// directions are perpendicular exactly when they reduce to the same key with different parities, so one
+// hash table of keys per pivot holds the answer. A triangle has at most one right angle, so each is found
+// once. Pivots are split across fork-join tasks. Differences are taken in long, so any int coordinates
+// work; points coinciding with the pivot are skipped, so degenerate triangles are never reported
+final class RightTriangles {
+    // Amount of pivot-times-points work below which a range of pivots is handled on one thread
+    private static final int TASK_WORK = 1 << 20;
+
+    private final int[] xs;
+    private final int[] ys;
+
+    // Functional interface receiving a right triangle as its right-angle vertex and the two other
+    // vertices, all as indices into the point arrays
+    interface TripleConsumer {
+        void accept(int right, int a, int b);
+    }
+
+    // Constructor to use the points (xs[i], ys[i]); the arrays are copied
+    public RightTriangles(int[] xs, int[] ys) {
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("Coordinate arrays differ in length: " + xs.length + " and " + ys.length);
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+    }
+
+    // Method returning the number of right triangles, computed in parallel on the common pool
+    public long count() {
+        return ForkJoinPool.commonPool().invoke(new PivotTask(0, xs.length, null));
+    }
+
+    // Method to pass every right triangle to 'action' and return how many there were. Pivots run in
+    // parallel, so 'action' is called from several threads at once and must be thread-safe
+    public long enumerate(TripleConsumer action) {
+        return ForkJoinPool.commonPool().invoke(new PivotTask(0, xs.length, action));
+    }
+
+    // Method to count the right triangles with the right angle at 'pivot', passing them to 'action'
+    // unless it is null, using the caller's table
+    private long pivot(int pivot, Directions table, TripleConsumer action) {
+        table.clear();
+        int n = xs.length;
+        long px = xs[pivot];
+        long py = ys[pivot];
+        for (int i = 0; i < n; i++) {
+            long a = xs[i] - px;
+            long b = ys[i] - py;
+            if (a == 0 && b == 0) {
+                table.slots[i] = -1;
+                continue;
+            }
+            long g = gcd(Math.abs(a), Math.abs(b));
+            a /= g;
+            b /= g;
+            // Quarter turns clockwise, (a, b) -> (b, -a), until the direction lies in x > 0, y >= 0
+            int parity = 0;
+            while (a <= 0 || b < 0) {
+                long t = a;
+                a = b;
+                b = -t;
+                parity ^= 1;
+            }
+            // Both now lie in [0, 2^32), so they pack into one key; the table's empty marker -1 would
+            // need a == b > 1, which the gcd reduction rules out
+            table.add(i, (a << 32) | b, parity);
+        }
+        long count = 0;
+        for (int u = 0; u < table.used; u++) {
+            int s = table.order[u];
+            count += (long) table.even[s] * table.odd[s];
+        }
+        if (action != null && count > 0)
+            table.emit(pivot, action);
+        return count;
+    }
+
+    // Helper returning the greatest common divisor of two non-negative longs, not both zero
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    // Fork-join task halving a range of pivots until its work falls under TASK_WORK
+    @SuppressWarnings("serial")
+    private final class PivotTask extends RecursiveTask<Long> {
+        private final int from;
+        private final int to;
+        private final TripleConsumer action;
+
+        PivotTask(int from, int to, TripleConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        protected Long compute() {
+            if (to - from <= Math.max(1, TASK_WORK / Math.max(1, xs.length))) {
+                Directions table = new Directions(xs.length);
+                long count = 0;
+                for (int p = from; p < to; p++) {
+                    count += pivot(p, table, action);
+                }
+                return count;
+            }
+            int mid = (from + to) >>> 1;
+            PivotTask left = new PivotTask(from, mid, action);
+            left.fork();
+            long right = new PivotTask(mid, to, action).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Open-addressing table from a reduced direction to how many points lie along it with an even and an
+    // odd number of quarter turns, reused from pivot to pivot by clearing only the slots in use
+    private static final class Directions {
+        final long[] keys;
+        final int[] even;
+        final int[] odd;
+        // Slots in first-use order, then the slot (-1 for points on the pivot) and parity of every point
+        final int[] order;
+        final int[] slots;
+        final byte[] parities;
+        int used;
+        private final int shift;
+        private int[] grouped;
+
+        Directions(int n) {
+            int capacity = Integer.highestOneBit(Math.max(2, 2 * n - 1)) << 1;
+            keys = new long[capacity];
+            even = new int[capacity];
+            odd = new int[capacity];
+            order = new int[n];
+            slots = new int[n];
+            parities = new byte[n];
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            Arrays.fill(keys, -1);
+        }
+
+        void clear() {
+            for (int u = 0; u < used; u++) {
+                int s = order[u];
+                keys[s] = -1;
+                even[s] = 0;
+                odd[s] = 0;
+            }
+            used = 0;
+        }
+
+        // Method to count point 'i' along direction 'key'
+        void add(int i, long key, int parity) {
+            int mask = keys.length - 1;
+            int s = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+            while (keys[s] != key) {
+                if (keys[s] == -1) {
+                    keys[s] = key;
+                    order[used++] = s;
+                    break;
+                }
+                s = (s + 1) & mask;
+            }
+            if (parity == 0)
+                even[s]++;
+            else
+                odd[s]++;
+            slots[i] = s;
+            parities[i] = (byte) parity;
+        }
+
+        // Method to group the points by direction and parity with a counting sort, then pair every even
+        // point of a direction with every odd one. Leaves positions in 'even' and 'odd' for clear() to reset
+        void emit(int pivot, TripleConsumer action) {
+            int n = slots.length;
+            if (grouped == null)
+                grouped = new int[n];
+            // Group 2u holds the even points of the u-th direction used, group 2u + 1 its odd points
+            int[] start = new int[2 * used + 1];
+            int at = 0;
+            for (int u = 0; u < used; u++) {
+                int s = order[u];
+                start[2 * u] = at;
+                at += even[s];
+                start[2 * u + 1] = at;
+                at += odd[s];
+                even[s] = start[2 * u];
+                odd[s] = start[2 * u + 1];
+            }
+            start[2 * used] = at;
+            for (int i = 0; i < n; i++) {
+                int s = slots[i];
+                if (s >= 0)
+                    grouped[parities[i] == 0 ? even[s]++ : odd[s]++] = i;
+            }
+            for (int u = 0; u < used; u++) {
+                for (int e = start[2 * u]; e < start[2 * u + 1]; e++) {
+                    for (int o = start[2 * u + 1]; o < start[2 * u + 2]; o++) {
+                        action.accept(pivot, Math.min(grouped[e], grouped[o]), Math.max(grouped[e], grouped[o]));
+                    }
+                }
+            }
+        }
+    }
+
+    // Entry point counting right triangles among random points on a small grid, where many exist, and
+    // checking the count and the listed triangles against a loop over all triples for small sets, and the
+    // count against the same grid stretched over the whole int range
+    public static void main(String[] args) {
+        for (int requested : Bench.sizes(args, 0)) {
+            int n = Math.min(requested, 50_000);
+            Random random = new Random(42);
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = random.nextInt(1_000);
+                ys[i] = random.nextInt(1_000);
+            }
+            RightTriangles triangles = new RightTriangles(xs, ys);
+            long start = System.nanoTime();
+            long count = triangles.count();
+            long nanos = System.nanoTime() - start;
+            String check = "";
+            if (n <= 300) {
+                Set<Long> listed = ConcurrentHashMap.newKeySet();
+                long enumerated = triangles.enumerate((r, a, b) -> listed.add(((long) r * n + a) * n + b));
+                long brute = 0;
+                boolean same = enumerated == count && listed.size() == count;
+                for (int i = 0; i < n; i++) {
+                    for (int j = i + 1; j < n; j++) {
+                        for (int k = j + 1; k < n; k++) {
+                            int r = right(xs, ys, i, j, k);
+                            if (r < 0)
+                                continue;
+                            brute++;
+                            int a = r == i ? j : i;
+                            int b = r == k ? j : k;
+                            same &= listed.contains(((long) r * n + a) * n + b);
+                        }
+                    }
+                }
+                int[] wideXs = new int[n];
+                int[] wideYs = new int[n];
+                for (int i = 0; i < n; i++) {
+                    wideXs[i] = Integer.MIN_VALUE + xs[i] * 4_294_967;
+                    wideYs[i] = Integer.MIN_VALUE + ys[i] * 4_294_967;
+                }
+                same &= new RightTriangles(wideXs, wideYs).count() == count;
+                check = same && brute == count ? ", matches a loop over all triples" : ", DIFFERS from a loop over all triples (" + brute + ")";
+            }
+            System.out.printf("%,d points: %,d right triangles in %.1f ms%s%n", n, count, nanos / 1e6, check);
+        }
+    }
+
+    // Helper returning the vertex among i, j, k holding a right angle, or -1, for the loop over triples
+    private static int right(int[] xs, int[] ys, int i, int j, int k) {
+        if ((xs[i] == xs[j] && ys[i] == ys[j]) || (xs[i] == xs[k] && ys[i] == ys[k]) || (xs[j] == xs[k] && ys[j] == ys[k]))
+            return -1;
+        if (ExactPredicates.isRightAngle(xs[i], ys[i], xs[j], ys[j], xs[k], ys[k]))
+            return i;
+        if (ExactPredicates.isRightAngle(xs[j], ys[j], xs[i], ys[i], xs[k], ys[k]))
+            return j;
+        if (ExactPredicates.isRightAngle(xs[k], ys[k], xs[i], ys[i], xs[j], ys[j]))
+            return k;
+        return -1;
+    }
+}
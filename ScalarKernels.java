@@ -0,0 +1,76 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'ScalarKernels' running every batch kernel one shape at a time
+class ScalarKernels implements BatchKernels {
+    public void triangleAreas(TriangleBatch b, double[] out) {
+        for (int i = 0; i < b.size(); i++) {
+            out[i] = b.getArea(i);
+        }
+    }
+
+    public void trianglePerimeters(TriangleBatch b, double[] out) {
+        for (int i = 0; i < b.size(); i++) {
+            out[i] = b.getPerimeter(i);
+        }
+    }
+
+    public void triangleSquaredSides(TriangleBatch b, double[] side1, double[] side2, double[] side3) {
+        for (int i = 0; i < b.size(); i++) {
+            side1[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x2[i], b.y2[i]);
+            side2[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x3[i], b.y3[i]);
+            side3[i] = ShapeBatch.squaredDistance(b.x2[i], b.y2[i], b.x3[i], b.y3[i]);
+        }
+    }
+
+    public int rightAngled(TriangleBatch b, boolean[] out) {
+        return rightAngled(b, out, 0, b.size());
+    }
+
+    // Method to flag the right-angled triangles in [from, to), returning how many were found
+    static int rightAngled(TriangleBatch b, boolean[] out, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            boolean right = b.isRightAngled(i);
+            out[i] = right;
+            if (right)
+                count++;
+        }
+        return count;
+    }
+
+    public void rectangleAreas(RectangleBatch b, double[] out) {
+        for (int i = 0; i < b.size(); i++) {
+            out[i] = b.getArea(i);
+        }
+    }
+
+    public void rectanglePerimeters(RectangleBatch b, double[] out) {
+        for (int i = 0; i < b.size(); i++) {
+            out[i] = b.getPerimeter(i);
+        }
+    }
+
+    public void rectangleSquaredSides(RectangleBatch b, double[] length, double[] width) {
+        for (int i = 0; i < b.size(); i++) {
+            length[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x2[i], b.y2[i]);
+            width[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x4[i], b.y4[i]);
+        }
+    }
+
+    public int squares(RectangleBatch b, boolean[] out) {
+        return squares(b, out, 0, b.size());
+    }
+
+    // Method to flag the squares in [from, to), returning how many were found
+    static int squares(RectangleBatch b, boolean[] out, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            boolean square = b.isSquare(i);
+            out[i] = square;
+            if (square)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,60 @@
+// Importing necessary Java libraries
+import java.lang.Math;
+import java.io.*;
+import java.util.*;
+
+// Abstract class 'ShapeBatch' storing many shapes as flat int columns instead of Point objects
+abstract class ShapeBatch {
+    // Number of shapes stored in the batch
+    protected final int size;
+
+    // Constructor to initialize the batch with the number of shapes it holds
+    protected ShapeBatch(int size) {
+        this.size = size;
+    }
+
+    // Getter method to retrieve the number of shapes in the batch
+    public int size() {
+        return size;
+    }
+
+    // Abstract methods to be implemented by subclasses for the area and perimeter of one shape
+    public abstract double getArea(int i);
+    public abstract double getPerimeter(int i);
+
+    // Abstract methods to print the coordinates of one shape to System.out or a ShapeWriter
+    public abstract void print(int i);
+    public abstract void print(int i, ShapeWriter out);
+
+    // Method to calculate the areas of all shapes, writing them into 'areas'
+    public void getAreas(double[] areas) {
+        for (int i = 0; i < size; i++) {
+            areas[i] = getArea(i);
+        }
+    }
+
+    // Method to calculate the perimeters of all shapes, writing them into 'perimeters'
+    public void getPerimeters(double[] perimeters) {
+        for (int i = 0; i < size; i++) {
+            perimeters[i] = getPerimeter(i);
+        }
+    }
+
+    // Method to calculate the distance between two coordinates using the Euclidean distance formula
+    static double distance(int x1, int y1, int x2, int y2) {
+        return Math.sqrt(squaredDistance(x1, y1, x2, y2));
+    }
+
+    // Method to calculate the squared distance between two coordinates. Squaring in double: the differences
+    // are exact, and (a^2) + (b^2) of up to 2^65 cannot overflow; the result is exact while below 2^53
+    static double squaredDistance(int x1, int y1, int x2, int y2) {
+        long a = (long) x1 - x2;
+        long b = (long) y1 - y2;
+        return ((double) a * a) + ((double) b * b);
+    }
+
+    // Method to print one coordinate pair in the same format as Point.print()
+    static void printPoint(int x, int y) {
+        System.out.println("{" + x + "," + y + "}");
+    }
+}
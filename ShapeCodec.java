@@ -0,0 +1,548 @@
+// Importing necessary Java libraries
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Class 'ShapeCodec' storing triangle or rectangle collections in a compact binary format. Every coordinate
+// is written as the zig-zag varint of its difference from the same coordinate of the previous vertex, so
+// the small, clustered coordinates of typical archives take one or two bytes instead of four.
+// Layout: a 12-byte header (little-endian int magic, int vertices per shape, int shapes per block), then
+// blocks of up to 'shapes per block' shapes, each a varint shape count, a varint byte length and the
+// coordinates; a zero count ends the blocks. After it come the block index (one little-endian long file
+// offset per block, plus the offset of the end marker) and a 24-byte trailer: long index offset,
+// long shape count, int block count, int magic. Deltas restart at every block, so any block decodes on
+// its own: Reader seeks straight to the block holding a shape, while Encoder and Decoder stream the
+// collection one block at a time and never hold more than that
+final class ShapeCodec {
+    public static final int MAGIC = 0x31434853; // "SHC1"
+    public static final int HEADER_BYTES = 12;
+    public static final int TRAILER_BYTES = 24;
+    public static final int DEFAULT_BLOCK_SHAPES = 4096;
+
+    // A 32-bit value takes at most five varint bytes
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private ShapeCodec() {
+    }
+
+    // Method to write the same 3D coordinate arrays the 'main' methods use into a codec file
+    public static void write(Path path, int[][][] shapesArray) throws IOException {
+        if (shapesArray.length == 0)
+            throw new IllegalArgumentException("Cannot infer the shape kind of an empty array");
+        try (Encoder encoder = new Encoder(Files.newOutputStream(path), shapesArray[0].length)) {
+            for (int i = 0; i < shapesArray.length; i++) {
+                encoder.add(shapesArray[i]);
+            }
+        }
+    }
+
+    // Method to read a whole codec file back into the {{x,y},...} format, e.g. for getRectangles
+    public static int[][][] read(Path path) throws IOException {
+        try (Reader reader = new Reader(path)) {
+            if (reader.size() > Integer.MAX_VALUE)
+                throw new IOException("Too many shapes for an array: " + reader.size());
+            int[][][] shapesArray = new int[(int) reader.size()][][];
+            for (int i = 0; i < shapesArray.length; i++) {
+                shapesArray[i] = new int[reader.getVertices()][2];
+                reader.get(i, shapesArray[i]);
+            }
+            return shapesArray;
+        }
+    }
+
+    // Helper writing 'value' as an unsigned varint at 'at', returning the position after it
+    private static int putVarint(byte[] bytes, int at, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[at++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        bytes[at++] = (byte) value;
+        return at;
+    }
+
+    // Helper decoding 'values' interleaved x,y coordinates from bytes[at..end) into 'coordinates',
+    // adding each delta to the same coordinate of the previous vertex
+    private static void decode(byte[] bytes, int at, int end, int values, int[] coordinates) throws IOException {
+        for (int k = 0; k < values; k++) {
+            int z = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (at == end || shift > 28)
+                    throw new IOException("Corrupt shape block");
+                b = bytes[at++];
+                z |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int delta = (z >>> 1) ^ -(z & 1);
+            coordinates[k] = (k < 2 ? 0 : coordinates[k - 2]) + delta;
+        }
+        if (at != end)
+            throw new IOException("Corrupt shape block: " + (end - at) + " trailing bytes");
+    }
+
+    private static void checkVertices(int vertices) {
+        if (vertices != ShapeFile.TRIANGLES && vertices != ShapeFile.RECTANGLES)
+            throw new IllegalArgumentException("Unsupported vertices per shape: " + vertices);
+    }
+
+    // Class 'Encoder' appending shapes to a codec stream; the index and trailer are written on close
+    static final class Encoder implements Closeable {
+        private final OutputStream out;
+        private final int vertices;
+        private final int blockShapes;
+        private final byte[] block;
+        private final byte[] scratch = new byte[2 * MAX_VARINT_BYTES];
+        private final Sink sink = new Sink();
+        private int blockBytes;
+        private int blockCount;
+        private int previousX;
+        private int previousY;
+        private long[] offsets = new long[16];
+        private int blocks;
+        private long position;
+        private long count;
+
+        // Constructor writing shapes with 'vertices' vertices to 'out' in blocks of DEFAULT_BLOCK_SHAPES
+        public Encoder(OutputStream out, int vertices) throws IOException {
+            this(out, vertices, DEFAULT_BLOCK_SHAPES);
+        }
+
+        // Constructor choosing the number of shapes per block: smaller blocks make random access cheaper,
+        // larger ones amortize the block header and restart the deltas less often
+        public Encoder(OutputStream out, int vertices, int blockShapes) throws IOException {
+            checkVertices(vertices);
+            if (blockShapes < 1)
+                throw new IllegalArgumentException("Shapes per block must be positive: " + blockShapes);
+            this.out = new BufferedOutputStream(out, 1 << 16);
+            this.vertices = vertices;
+            this.blockShapes = blockShapes;
+            this.block = new byte[blockShapes * vertices * 2 * MAX_VARINT_BYTES];
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(vertices).putInt(blockShapes);
+            write(header.array(), HEADER_BYTES);
+        }
+
+        // Method to append one shape given as {{x,y},...}
+        public void add(int[][] shape) throws IOException {
+            if (shape.length != vertices)
+                throw new IllegalArgumentException("Expected " + vertices + " vertices, got " + shape.length);
+            for (int v = 0; v < vertices; v++) {
+                put(shape[v][0], shape[v][1]);
+            }
+            endShape();
+        }
+
+        // Method to append a Triangle or Rectangle of any ShapesN variant through its print(ShapeWriter),
+        // e.g. encoder.add(triangle::print); taking the method keeps the codec free of the variants' classes
+        public void add(Consumer<ShapeWriter> shape) throws IOException {
+            try {
+                shape.accept(sink);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Getter method to retrieve the number of shapes added so far
+        public long size() {
+            return count;
+        }
+
+        // Method to write the last block, the end marker, the block index and the trailer, then close the stream
+        public void close() throws IOException {
+            try {
+                flushBlock();
+                long end = position;
+                write(new byte[1], 1);
+                ByteBuffer index = ByteBuffer.allocate((blocks + 1) * Long.BYTES + TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int b = 0; b < blocks; b++) {
+                    index.putLong(offsets[b]);
+                }
+                index.putLong(end);
+                index.putLong(end + 1).putLong(count).putInt(blocks).putInt(MAGIC);
+                write(index.array(), index.capacity());
+            } finally {
+                out.close();
+            }
+        }
+
+        private void put(int x, int y) {
+            int dx = x - previousX;
+            int dy = y - previousY;
+            blockBytes = putVarint(block, blockBytes, (dx << 1) ^ (dx >> 31));
+            blockBytes = putVarint(block, blockBytes, (dy << 1) ^ (dy >> 31));
+            previousX = x;
+            previousY = y;
+        }
+
+        private void endShape() throws IOException {
+            count++;
+            if (++blockCount == blockShapes)
+                flushBlock();
+        }
+
+        // Helper writing the current block behind its shape count and byte length, and restarting the deltas
+        private void flushBlock() throws IOException {
+            if (blockCount == 0)
+                return;
+            if (blocks == offsets.length)
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+            offsets[blocks++] = position;
+            int at = putVarint(scratch, 0, blockCount);
+            at = putVarint(scratch, at, blockBytes);
+            write(scratch, at);
+            write(block, blockBytes);
+            blockBytes = 0;
+            blockCount = 0;
+            previousX = 0;
+            previousY = 0;
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+            position += length;
+        }
+
+        // Class 'Sink' receiving the points a shape prints in binary mode and encoding them as one shape
+        private final class Sink extends ShapeWriter {
+            private int points = -1;
+
+            Sink() {
+                super(Channels.newChannel(OutputStream.nullOutputStream()), Mode.BINARY, 32);
+            }
+
+            @Override
+            public void beginShape(int shapeVertices) {
+                if (shapeVertices != vertices)
+                    throw new IllegalArgumentException("Expected " + vertices + " vertices, got " + shapeVertices);
+                points = 0;
+            }
+
+            @Override
+            public void writePoint(int x, int y) {
+                if (points < 0)
+                    throw new IllegalStateException("Point written outside a shape");
+                put(x, y);
+                if (++points == vertices) {
+                    points = -1;
+                    try {
+                        endShape();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    // Class 'Decoder' reading a codec stream front to back, one block in memory at a time
+    static final class Decoder implements Closeable {
+        private final DataInputStream in;
+        private final int vertices;
+        private final int blockShapes;
+        private final int[] coordinates;
+        private byte[] bytes;
+        private int blockCount;
+        private int next;
+        private int blocks;
+        private long count;
+        private boolean finished;
+
+        // Constructor reading the header from 'in'
+        public Decoder(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            byte[] header = new byte[HEADER_BYTES];
+            this.in.readFully(header);
+            ByteBuffer b = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            if (b.getInt(0) != MAGIC)
+                throw new IOException("Not a shape codec stream");
+            vertices = b.getInt(4);
+            blockShapes = b.getInt(8);
+            if ((vertices != ShapeFile.TRIANGLES && vertices != ShapeFile.RECTANGLES) || blockShapes < 1
+                    || blockShapes > (Integer.MAX_VALUE / (2 * MAX_VARINT_BYTES)) / vertices)
+                throw new IOException("Corrupt shape codec header");
+            coordinates = new int[blockShapes * vertices * 2];
+            bytes = new byte[0];
+        }
+
+        // Getter method to retrieve the number of vertices per shape
+        public int getVertices() {
+            return vertices;
+        }
+
+        // Getter method to retrieve the number of shapes decoded so far
+        public long count() {
+            return count;
+        }
+
+        // Method to decode the next shape into 'shape' ({{x,y},...}); returns false at the end of the stream
+        public boolean next(int[][] shape) throws IOException {
+            if (next == blockCount && !nextBlock())
+                return false;
+            int o = next++ * vertices * 2;
+            for (int v = 0; v < vertices; v++) {
+                shape[v][0] = coordinates[o + 2 * v];
+                shape[v][1] = coordinates[o + 2 * v + 1];
+            }
+            count++;
+            return true;
+        }
+
+        // Method to decode up to chunk.length shapes into 'chunk', allocating the {x,y} arrays it lacks,
+        // and return how many were decoded (0 at the end of the stream)
+        public int read(int[][][] chunk) throws IOException {
+            int n = 0;
+            while (n < chunk.length) {
+                if (chunk[n] == null || chunk[n].length != vertices)
+                    chunk[n] = new int[vertices][2];
+                if (!next(chunk[n]))
+                    break;
+                n++;
+            }
+            return n;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+
+        // Helper reading and decoding the next block; at the end marker it checks the index and trailer
+        private boolean nextBlock() throws IOException {
+            if (finished)
+                return false;
+            int shapes = readVarint();
+            if (shapes == 0) {
+                finish();
+                return false;
+            }
+            int length = readVarint();
+            if (shapes > blockShapes || length < shapes * vertices * 2 || length > shapes * vertices * 2 * MAX_VARINT_BYTES)
+                throw new IOException("Corrupt shape block header");
+            if (bytes.length < length)
+                bytes = new byte[Math.max(length, Math.min(2 * bytes.length, coordinates.length * MAX_VARINT_BYTES))];
+            in.readFully(bytes, 0, length);
+            decode(bytes, 0, length, shapes * vertices * 2, coordinates);
+            blockCount = shapes;
+            next = 0;
+            blocks++;
+            return true;
+        }
+
+        private void finish() throws IOException {
+            finished = true;
+            byte[] tail = new byte[(blocks + 1) * Long.BYTES + TRAILER_BYTES];
+            in.readFully(tail);
+            ByteBuffer trailer = ByteBuffer.wrap(tail, tail.length - TRAILER_BYTES, TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.getLong();
+            long expected = trailer.getLong();
+            if (trailer.getInt() != blocks || trailer.getInt() != MAGIC || expected != count)
+                throw new IOException("Shape codec trailer does not match the blocks read");
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = in.readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Corrupt varint");
+        }
+    }
+
+    // Class 'Reader' giving random access to a codec file: the block index locates the block holding a
+    // shape, which is read and decoded once and kept until a shape from another block is requested
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final int vertices;
+        private final int blockShapes;
+        private final long count;
+        private final long[] offsets;
+        private final int[] coordinates;
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+        private int loaded = -1;
+
+        // Constructor reading the header, trailer and block index of the file at 'path'
+        public Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_BYTES + 1 + Long.BYTES + TRAILER_BYTES)
+                    throw new IOException("Truncated shape codec file: " + path);
+                ByteBuffer header = readAt(0, HEADER_BYTES);
+                ByteBuffer trailer = readAt(size - TRAILER_BYTES, TRAILER_BYTES);
+                if (header.getInt(0) != MAGIC || trailer.getInt(20) != MAGIC)
+                    throw new IOException("Not a shape codec file: " + path);
+                vertices = header.getInt(4);
+                blockShapes = header.getInt(8);
+                long indexOffset = trailer.getLong(0);
+                count = trailer.getLong(8);
+                int blocks = trailer.getInt(16);
+                if ((vertices != ShapeFile.TRIANGLES && vertices != ShapeFile.RECTANGLES) || blockShapes < 1
+                        || blockShapes > (Integer.MAX_VALUE / (2 * MAX_VARINT_BYTES)) / vertices
+                        || blocks < 0 || count < 0 || count > (long) blocks * blockShapes
+                        || indexOffset + (blocks + 1L) * Long.BYTES + TRAILER_BYTES != size)
+                    throw new IOException("Corrupt shape codec file: " + path);
+                ByteBuffer index = readAt(indexOffset, (blocks + 1) * Long.BYTES);
+                offsets = new long[blocks + 1];
+                for (int b = 0; b <= blocks; b++) {
+                    offsets[b] = index.getLong(b * Long.BYTES);
+                }
+                coordinates = new int[blockShapes * vertices * 2];
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // Getter method to retrieve the number of vertices per shape
+        public int getVertices() {
+            return vertices;
+        }
+
+        // Getter method to retrieve the number of shapes in the file
+        public long size() {
+            return count;
+        }
+
+        // Method to decode shape 'i' into 'shape' ({{x,y},...})
+        public void get(long i, int[][] shape) throws IOException {
+            int o = locate(i);
+            for (int v = 0; v < vertices; v++) {
+                shape[v][0] = coordinates[o + 2 * v];
+                shape[v][1] = coordinates[o + 2 * v + 1];
+            }
+        }
+
+        // Getter methods to retrieve a coordinate of vertex 'v' (0-based) of shape 'i'
+        public int getX(long i, int v) throws IOException {
+            return coordinates[locate(i) + 2 * v];
+        }
+
+        public int getY(long i, int v) throws IOException {
+            return coordinates[locate(i) + 2 * v + 1];
+        }
+
+        // Method to print the coordinates of shape 'i' to a ShapeWriter
+        public void print(long i, ShapeWriter out) throws IOException {
+            int o = locate(i);
+            out.beginShape(vertices);
+            for (int v = 0; v < vertices; v++) {
+                out.writePoint(coordinates[o + 2 * v], coordinates[o + 2 * v + 1]);
+            }
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        // Helper loading the block of shape 'i' when needed and returning the shape's offset in 'coordinates'
+        private int locate(long i) throws IOException {
+            if (i < 0 || i >= count)
+                throw new IndexOutOfBoundsException("Shape " + i + " of " + count);
+            int b = (int) (i / blockShapes);
+            if (b != loaded)
+                load(b);
+            return (int) (i % blockShapes) * vertices * 2;
+        }
+
+        private void load(int b) throws IOException {
+            loaded = -1;
+            long length = offsets[b + 1] - offsets[b];
+            if (length < 2 || length > 2 * MAX_VARINT_BYTES + (long) coordinates.length * MAX_VARINT_BYTES)
+                throw new IOException("Corrupt block index entry " + b);
+            if (bytes.capacity() < length)
+                bytes = ByteBuffer.allocate((int) length);
+            bytes.clear().limit((int) length);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, offsets[b] + bytes.position()) < 0)
+                    throw new IOException("Truncated block " + b);
+            }
+            byte[] array = bytes.array();
+            // Block header: shape count and byte length, both varints
+            int at = 0;
+            int[] header = new int[2];
+            for (int h = 0; h < 2; h++) {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    if (at == length || shift > 28)
+                        throw new IOException("Corrupt header of block " + b);
+                    byte x = array[at++];
+                    value |= (x & 0x7F) << shift;
+                    if (x >= 0)
+                        break;
+                }
+                header[h] = value;
+            }
+            long expected = Math.min(blockShapes, count - (long) b * blockShapes);
+            if (header[0] != expected || at + header[1] != length)
+                throw new IOException("Corrupt header of block " + b);
+            decode(array, at, (int) length, header[0] * vertices * 2, coordinates);
+            loaded = b;
+        }
+
+        private ByteBuffer readAt(long position, int length) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining()) {
+                if (channel.read(b, position + b.position()) < 0)
+                    throw new EOFException();
+            }
+            return b;
+        }
+    }
+
+    // Entry point converting a ShapeFile into a codec file ("encode <shape file> <codec file>"), or
+    // encoding random rectangles and triangles of the given sizes in memory and reporting bytes per shape
+    // against the fixed 4-byte ints of ShapeFile, after checking that every shape decodes back unchanged
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("encode")) {
+            try (ShapeFile file = new ShapeFile(Paths.get(args[1]));
+                    Encoder encoder = new Encoder(Files.newOutputStream(Paths.get(args[2])), file.getVertices())) {
+                int[][] shape = new int[file.getVertices()][2];
+                for (long i = 0; i < file.size(); i++) {
+                    for (int v = 0; v < shape.length; v++) {
+                        shape[v][0] = file.getX(i, v);
+                        shape[v][1] = file.getY(i, v);
+                    }
+                    encoder.add(shape);
+                }
+            }
+            return;
+        }
+        for (int n : Bench.sizes(args, 0)) {
+            report("rectangles", Bench.randomRectangles(n, 42));
+            report("triangles", Bench.randomTriangles(n, 43));
+        }
+    }
+
+    private static void report(String name, int[][][] shapesArray) throws IOException {
+        int vertices = shapesArray[0].length;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        try (Encoder encoder = new Encoder(bytes, vertices)) {
+            for (int[][] shape : shapesArray) {
+                encoder.add(shape);
+            }
+        }
+        long encoded = System.nanoTime() - start;
+        start = System.nanoTime();
+        try (Decoder decoder = new Decoder(new ByteArrayInputStream(bytes.toByteArray()))) {
+            int[][] shape = new int[vertices][2];
+            for (int[][] expected : shapesArray) {
+                if (!decoder.next(shape) || !Arrays.deepEquals(shape, expected))
+                    throw new IllegalStateException("Round trip failed at shape " + decoder.count());
+            }
+            if (decoder.next(shape))
+                throw new IllegalStateException("Decoded more shapes than were encoded");
+        }
+        long decoded = System.nanoTime() - start;
+        long fixed = ShapeFile.HEADER_BYTES + (long) shapesArray.length * vertices * 2 * Integer.BYTES;
+        System.out.printf("%,d %s: %,d bytes (%.2f per shape), ShapeFile %,d bytes (%.1fx); encode %.1f ns/shape, decode %.1f ns/shape%n",
+                shapesArray.length, name, bytes.size(), (double) bytes.size() / shapesArray.length, fixed,
+                (double) fixed / bytes.size(), (double) encoded / shapesArray.length, (double) decoded / shapesArray.length);
+    }
+}
@@ -0,0 +1,291 @@
+// Importing necessary Java libraries
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+// Class 'ShapeFile' reading a binary shape file through memory-mapped segments.
+// Layout (little-endian): int magic, int vertices per shape (3 = triangles, 4 = rectangles),
+// long shape count, then every shape as packed {x,y} int pairs in vertex order
+class ShapeFile implements Closeable {
+    public static final int MAGIC = 0x31504853; // "SHP1"
+    public static final int HEADER_BYTES = 16;
+    public static final int TRIANGLES = 3;
+    public static final int RECTANGLES = 4;
+
+    private final FileChannel channel;
+    private final int vertices;
+    private final long count;
+    private final int recordBytes;
+    private final long shapesPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    // Constructor opening and mapping a shape file; the file is not read into the heap
+    public ShapeFile(Path path) throws IOException {
+        this(path, Integer.MAX_VALUE);
+    }
+
+    // Constructor mapping the file in segments of at most 'maxSegmentBytes' bytes
+    ShapeFile(Path path, int maxSegmentBytes) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("Truncated shape file header: " + path);
+            }
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a shape file: " + path);
+            vertices = header.getInt(4);
+            if (vertices != TRIANGLES && vertices != RECTANGLES)
+                throw new IOException("Unsupported vertices per shape " + vertices + ": " + path);
+            count = header.getLong(8);
+            recordBytes = vertices * 2 * Integer.BYTES;
+            // Divided rather than multiplied, so a corrupt count cannot overflow past the check
+            if (count < 0 || count > (channel.size() - HEADER_BYTES) / recordBytes)
+                throw new IOException("Shape count " + count + " exceeds file size: " + path);
+
+            // Segments hold whole shapes, so no shape is ever split across two buffers
+            shapesPerSegment = maxSegmentBytes / recordBytes;
+            int n = (int) ((count + shapesPerSegment - 1) / shapesPerSegment);
+            segments = new MappedByteBuffer[n];
+            for (int s = 0; s < n; s++) {
+                long first = s * shapesPerSegment;
+                long shapes = Math.min(shapesPerSegment, count - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * recordBytes, shapes * recordBytes);
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Getter method to retrieve the number of vertices per shape
+    public int getVertices() {
+        return vertices;
+    }
+
+    // Getter method to retrieve the number of shapes in the file
+    public long size() {
+        return count;
+    }
+
+    // Getter methods to retrieve a coordinate of vertex 'v' (0-based) of shape 'i'
+    public int getX(long i, int v) {
+        return segment(i).getInt(offset(i) + v * 8);
+    }
+
+    public int getY(long i, int v) {
+        return segment(i).getInt(offset(i) + v * 8 + 4);
+    }
+
+    // Method to calculate the area of shape 'i' the same way Triangle and Rectangle do
+    public double getArea(long i) {
+        ByteBuffer b = segment(i);
+        int o = offset(i);
+        if (vertices == TRIANGLES) {
+            long side1 = (long) b.getInt(o) * ((long) b.getInt(o + 12) - b.getInt(o + 20));
+            long side2 = (long) b.getInt(o + 8) * ((long) b.getInt(o + 20) - b.getInt(o + 4));
+            long side3 = (long) b.getInt(o + 16) * ((long) b.getInt(o + 4) - b.getInt(o + 12));
+            return Math.abs((1.0 / 2) * (side1 + side2 + side3));
+        }
+        double length = ShapeBatch.distance(b.getInt(o), b.getInt(o + 4), b.getInt(o + 8), b.getInt(o + 12));
+        double width = ShapeBatch.distance(b.getInt(o), b.getInt(o + 4), b.getInt(o + 24), b.getInt(o + 28));
+        return length * width;
+    }
+
+    // Method to calculate the perimeter of shape 'i' the same way Triangle and Rectangle do
+    public double getPerimeter(long i) {
+        ByteBuffer b = segment(i);
+        int o = offset(i);
+        double side1 = ShapeBatch.distance(b.getInt(o), b.getInt(o + 4), b.getInt(o + 8), b.getInt(o + 12));
+        if (vertices == TRIANGLES) {
+            double side2 = ShapeBatch.distance(b.getInt(o), b.getInt(o + 4), b.getInt(o + 16), b.getInt(o + 20));
+            double side3 = ShapeBatch.distance(b.getInt(o + 8), b.getInt(o + 12), b.getInt(o + 16), b.getInt(o + 20));
+            return (side1 + side2 + side3);
+        }
+        double width = ShapeBatch.distance(b.getInt(o), b.getInt(o + 4), b.getInt(o + 24), b.getInt(o + 28));
+        return 2 * (side1 + width);
+    }
+
+    // Method to check if rectangle 'i' is a square
+    public boolean isSquare(long i) {
+        checkKind(RECTANGLES);
+        return isSquare(segment(i), offset(i));
+    }
+
+    // Method to check if triangle 'i' is a right-angled triangle
+    public boolean isRightAngled(long i) {
+        checkKind(TRIANGLES);
+        return isRightAngled(segment(i), offset(i));
+    }
+
+    // Method to pass the index of every square to 'action', in file order
+    public long forEachSquare(LongConsumer action) {
+        checkKind(RECTANGLES);
+        long found = 0;
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer b = segments[s];
+            long first = s * shapesPerSegment;
+            int shapes = b.capacity() / recordBytes;
+            for (int k = 0; k < shapes; k++) {
+                if (isSquare(b, k * recordBytes)) {
+                    found++;
+                    if (action != null)
+                        action.accept(first + k);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Method to pass the index of every right-angled triangle to 'action', in file order
+    public long forEachRightAngled(LongConsumer action) {
+        checkKind(TRIANGLES);
+        long found = 0;
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer b = segments[s];
+            long first = s * shapesPerSegment;
+            int shapes = b.capacity() / recordBytes;
+            for (int k = 0; k < shapes; k++) {
+                if (isRightAngled(b, k * recordBytes)) {
+                    found++;
+                    if (action != null)
+                        action.accept(first + k);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Method to print the coordinates of shape 'i' in the same format as Point.print()
+    public void print(long i) {
+        for (int v = 0; v < vertices; v++) {
+            ShapeBatch.printPoint(getX(i, v), getY(i, v));
+        }
+    }
+
+    // Method to print the coordinates of shape 'i' to a ShapeWriter
+    public void print(long i, ShapeWriter out) {
+        out.beginShape(vertices);
+        for (int v = 0; v < vertices; v++) {
+            out.writePoint(getX(i, v), getY(i, v));
+        }
+    }
+
+    // Method to close the channel and drop the buffers. The mappings themselves are released only when
+    // the garbage collector reclaims the buffers, which Java gives no supported way to force
+    public void close() throws IOException {
+        Arrays.fill(segments, null);
+        channel.close();
+    }
+
+    private static boolean isSquare(ByteBuffer b, int o) {
+        return ExactPredicates.isSquare(b.getInt(o), b.getInt(o + 4), b.getInt(o + 8), b.getInt(o + 12),
+                b.getInt(o + 24), b.getInt(o + 28));
+    }
+
+    private static boolean isRightAngled(ByteBuffer b, int o) {
+        return ExactPredicates.isRightAngled(b.getInt(o), b.getInt(o + 4), b.getInt(o + 8), b.getInt(o + 12),
+                b.getInt(o + 16), b.getInt(o + 20));
+    }
+
+    private ByteBuffer segment(long i) {
+        if (i < 0 || i >= count)
+            throw new IndexOutOfBoundsException("Shape " + i + " of " + count);
+        return segments[(int) (i / shapesPerSegment)];
+    }
+
+    private int offset(long i) {
+        return (int) (i % shapesPerSegment) * recordBytes;
+    }
+
+    private void checkKind(int expected) {
+        if (vertices != expected)
+            throw new IllegalStateException("File holds shapes with " + vertices + " vertices, not " + expected);
+    }
+
+    // Method to write the same 3D coordinate arrays the 'main' methods use into a shape file
+    public static void write(Path path, int[][][] shapesArray) throws IOException {
+        if (shapesArray.length == 0)
+            throw new IllegalArgumentException("Cannot infer the shape kind of an empty array");
+        try (Writer writer = new Writer(path, shapesArray[0].length)) {
+            for (int i = 0; i < shapesArray.length; i++) {
+                writer.add(shapesArray[i]);
+            }
+        }
+    }
+
+    // Class 'Writer' appending shapes to a new shape file; the count is filled in on close
+    static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int vertices;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long count;
+
+        // Constructor creating (or truncating) the file at 'path' for shapes with 'vertices' vertices
+        public Writer(Path path, int vertices) throws IOException {
+            if (vertices != TRIANGLES && vertices != RECTANGLES)
+                throw new IllegalArgumentException("Unsupported vertices per shape: " + vertices);
+            this.vertices = vertices;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(vertices).putLong(0);
+        }
+
+        // Method to append one shape given as {{x,y},...}
+        public void add(int[][] shape) throws IOException {
+            if (shape.length != vertices)
+                throw new IllegalArgumentException("Expected " + vertices + " vertices, got " + shape.length);
+            if (buffer.remaining() < vertices * 8)
+                drain();
+            for (int v = 0; v < vertices; v++) {
+                buffer.putInt(shape[v][0]).putInt(shape[v][1]);
+            }
+            count++;
+        }
+
+        // Method to flush the remaining shapes and write the final count into the header
+        public void close() throws IOException {
+            try {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(0, count);
+                channel.write(header, 8);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Entry point classifying a shape file without creating a single shape object
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java ShapeFile <file>");
+            System.exit(2);
+        }
+        ShapeWriter out = new ShapeWriter(System.out);
+        try (ShapeFile file = new ShapeFile(Paths.get(args[0]))) {
+            if (file.getVertices() == RECTANGLES) {
+                out.writeLine("These are the squares:");
+                file.forEachSquare(i -> file.print(i, out));
+            } else {
+                out.writeLine("These are the right-angled triangles:");
+                file.forEachRightAngled(i -> file.print(i, out));
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,332 @@
+// Importing necessary Java libraries
+import java.math.BigInteger;
+import java.util.*;
+
+// Class 'ShapeKeys' computing canonical keys for shapes given as {{x,y},...} vertex arrays:
+// - the identity key ignores where the vertex list starts and which way it runs, so rectangles 0 and 3
+//   of the sample data get the same key (for triangles this means any vertex order)
+// - the congruence key is built from the sorted exact squared side lengths, so shapes that only differ by
+//   a translation, rotation or reflection share it, for any int coordinates. For triangles this is exact
+//   (side-side-side); for rectangles the sides determine the shape too, for other quadrilaterals the key
+//   is coarser
+// Keys are 64-bit hashes; the deduplication and grouping passes confirm every hash match exactly, so a
+// hash collision can never merge two different shapes
+final class ShapeKeys {
+    private ShapeKeys() {
+    }
+
+    // Method returning the identity key of a shape
+    static long identityKey(int[][] shape) {
+        long[] vertices = new long[shape.length];
+        canonicalVertices(shape, vertices);
+        return hash(vertices, shape.length);
+    }
+
+    // Method checking whether two vertex lists describe the same shape up to start vertex and direction
+    static boolean sameShape(int[][] a, int[][] b) {
+        if (a.length != b.length)
+            return false;
+        long[] va = new long[a.length];
+        long[] vb = new long[b.length];
+        canonicalVertices(a, va);
+        canonicalVertices(b, vb);
+        return Arrays.equals(va, vb);
+    }
+
+    // Method returning the congruence key of a shape
+    static long congruenceKey(int[][] shape) {
+        long[] sides = new long[2 * shape.length];
+        sortedSquaredSides(shape, sides);
+        return hash(sides, sides.length);
+    }
+
+    // Method checking whether two shapes have the same sorted squared side lengths
+    static boolean congruent(int[][] a, int[][] b) {
+        if (a.length != b.length)
+            return false;
+        long[] sa = new long[2 * a.length];
+        long[] sb = new long[2 * b.length];
+        sortedSquaredSides(a, sa);
+        sortedSquaredSides(b, sb);
+        return Arrays.equals(sa, sb);
+    }
+
+    // Method returning, for every shape, the index of the first shape identical to it (itself when it is
+    // the first). One linear pass over an open-addressing table of primitive keys; the canonical vertices
+    // of every distinct shape are copied next to the table, so confirming a match stays in cache
+    static int[] deduplicate(int[][][] shapes) {
+        int[] first = new int[shapes.length];
+        Table table = new Table();
+        Entries entries = new Entries();
+        long[] canonical = new long[4];
+        for (int i = 0; i < shapes.length; i++) {
+            int[][] shape = shapes[i];
+            int n = shape.length;
+            if (canonical.length < n)
+                canonical = new long[n];
+            canonicalVertices(shape, canonical);
+            long key = hash(canonical, n);
+            int slot = table.slot(key);
+            int entry = -1;
+            while (table.isUsed(slot)) {
+                if (table.key(slot) == key && entries.matches(table.value(slot), canonical, n)) {
+                    entry = table.value(slot);
+                    break;
+                }
+                slot = table.next(slot);
+            }
+            if (entry < 0) {
+                entry = entries.add(canonical, n, i);
+                table.put(slot, key, entry);
+            }
+            first[i] = entries.first(entry);
+        }
+        return first;
+    }
+
+    // Method returning the shapes without duplicates, keeping the first of each in input order
+    static int[][][] distinct(int[][][] shapes) {
+        int[] first = deduplicate(shapes);
+        int count = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] == i)
+                count++;
+        }
+        int[][][] distinct = new int[count][][];
+        for (int i = 0, k = 0; i < first.length; i++) {
+            if (first[i] == i)
+                distinct[k++] = shapes[i];
+        }
+        return distinct;
+    }
+
+    // Method returning, for every shape, the id of its congruence group; ids count up from 0 in the order
+    // groups are first seen, so the number of groups is the largest id plus one
+    static int[] congruenceGroups(int[][][] shapes) {
+        int[] group = new int[shapes.length];
+        Table table = new Table();
+        Entries entries = new Entries();
+        long[] sides = new long[8];
+        for (int i = 0; i < shapes.length; i++) {
+            // Two key values per side: see sortedSquaredSides
+            int n = 2 * shapes[i].length;
+            if (sides.length < n)
+                sides = new long[n];
+            sortedSquaredSides(shapes[i], sides);
+            long key = hash(sides, n);
+            int slot = table.slot(key);
+            int entry = -1;
+            while (table.isUsed(slot)) {
+                if (table.key(slot) == key && entries.matches(table.value(slot), sides, n)) {
+                    entry = table.value(slot);
+                    break;
+                }
+                slot = table.next(slot);
+            }
+            if (entry < 0) {
+                entry = entries.add(sides, n, i);
+                table.put(slot, key, entry);
+            }
+            group[i] = entry;
+        }
+        return group;
+    }
+
+    // Helper writing the exact squared side lengths of a shape into 'sides' in ascending order, without a
+    // square root. A squared side can need 65 bits, so side k takes two values: sides[2k] holds bit 64 and
+    // sides[2k + 1] the low 64 bits, compared unsigned
+    private static void sortedSquaredSides(int[][] shape, long[] sides) {
+        int n = shape.length;
+        for (int k = 0; k < n; k++) {
+            int[] p = shape[k];
+            int[] q = shape[(k + 1) % n];
+            long high = ExactPredicates.squaredDistanceHigh(p[0], p[1], q[0], q[1]);
+            long low = ExactPredicates.squaredDistanceLow(p[0], p[1], q[0], q[1]);
+            // Insertion sort: shapes have three or four sides
+            int at = k;
+            while (at > 0 && (sides[2 * at - 2] > high
+                    || (sides[2 * at - 2] == high && Long.compareUnsigned(sides[2 * at - 1], low) > 0))) {
+                sides[2 * at] = sides[2 * at - 2];
+                sides[2 * at + 1] = sides[2 * at - 1];
+                at--;
+            }
+            sides[2 * at] = high;
+            sides[2 * at + 1] = low;
+        }
+    }
+
+    // Helper hashing the first n values of a key sequence
+    private static long hash(long[] values, int n) {
+        long h = n;
+        for (int k = 0; k < n; k++) {
+            h = h * 0x9E3779B97F4A7C15L + values[k];
+        }
+        return mix(h);
+    }
+
+    // Helper writing the vertices of a shape, packed as (x << 32 | y), into 'vertices' in canonical order
+    private static void canonicalVertices(int[][] shape, long[] vertices) {
+        int n = shape.length;
+        int order = canonical(shape);
+        int start = order >> 1;
+        int step = 1 - 2 * (order & 1);
+        for (int k = 0; k < n; k++) {
+            int[] p = shape[(start + step * k + n) % n];
+            vertices[k] = ((long) p[0] << 32) | (p[1] & 0xFFFFFFFFL);
+        }
+    }
+
+    // Helper returning the canonical order of a shape as start * 2 + (0 for forwards, 1 for backwards):
+    // the smallest of the vertex sequences obtained by starting anywhere and walking either way. Only
+    // sequences starting at the smallest vertex can win, so normally just its two directions are compared
+    private static int canonical(int[][] shape) {
+        int n = shape.length;
+        int min = 0;
+        for (int s = 1; s < n; s++) {
+            int[] p = shape[s];
+            int[] q = shape[min];
+            if (p[0] < q[0] || (p[0] == q[0] && p[1] < q[1]))
+                min = s;
+        }
+        int best = min * 2;
+        for (int s = min; s < n; s++) {
+            if (shape[s][0] != shape[min][0] || shape[s][1] != shape[min][1])
+                continue;
+            for (int d = s == min ? 1 : 0; d < 2; d++) {
+                if (compare(shape, s, 1 - 2 * d, best >> 1, 1 - 2 * (best & 1)) < 0)
+                    best = s * 2 + d;
+            }
+        }
+        return best;
+    }
+
+    // Helper comparing the vertex sequences starting at s1 and s2 and walking in directions d1 and d2
+    private static int compare(int[][] shape, int s1, int d1, int s2, int d2) {
+        int n = shape.length;
+        for (int k = 0; k < n; k++) {
+            int[] p = shape[(s1 + d1 * k + n) % n];
+            int[] q = shape[(s2 + d2 * k + n) % n];
+            int c = p[0] != q[0] ? Integer.compare(p[0], q[0]) : Integer.compare(p[1], q[1]);
+            if (c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+    // Helper finishing a hash with the 64-bit MurmurHash3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Self-check with coordinates at the ends of the int range, where squared sides need 65 bits
+    public static void main(String[] args) {
+        int lo = Integer.MIN_VALUE;
+        int hi = Integer.MAX_VALUE;
+        int[][] a = {{lo, lo}, {hi, lo}, {hi, hi}};
+        int[][] reflected = {{lo, lo}, {lo, hi}, {hi, hi}};
+        int[][] reordered = {{hi, hi}, {lo, lo}, {hi, lo}};
+        int[][] moved = {{lo, lo}, {hi, lo}, {hi, hi - 1}};
+        boolean ok = congruent(a, reflected) && congruent(a, reordered) && !congruent(a, moved)
+                && congruenceKey(a) == congruenceKey(reflected)
+                && Arrays.equals(congruenceGroups(new int[][][] {a, moved, reflected, reordered}),
+                        new int[] {0, 1, 0, 0});
+        BigInteger d = BigInteger.valueOf((long) hi - lo);
+        BigInteger exact = d.multiply(d).shiftLeft(1);
+        ok &= ExactPredicates.squaredDistanceHigh(lo, lo, hi, hi) == exact.shiftRight(64).longValue()
+                && ExactPredicates.squaredDistanceLow(lo, lo, hi, hi) == exact.longValue();
+        System.out.println(ok ? "extreme congruence keys ok" : "extreme congruence keys WRONG");
+    }
+
+    // Class 'Entries' keeping the key values of every distinct entry back to back in one long array,
+    // with the index of the first shape that produced it
+    private static final class Entries {
+        private long[] values = new long[1024];
+        private int[] offsets = new int[257];
+        private int[] firsts = new int[256];
+        private int count;
+
+        int add(long[] key, int n, int first) {
+            if (count + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                firsts = Arrays.copyOf(firsts, offsets.length - 1);
+            }
+            int at = offsets[count];
+            if (at + n > values.length)
+                values = Arrays.copyOf(values, Math.max(values.length * 2, at + n));
+            System.arraycopy(key, 0, values, at, n);
+            offsets[count + 1] = at + n;
+            firsts[count] = first;
+            return count++;
+        }
+
+        boolean matches(int entry, long[] key, int n) {
+            int at = offsets[entry];
+            return offsets[entry + 1] - at == n && Arrays.equals(values, at, at + n, key, 0, n);
+        }
+
+        int first(int entry) {
+            return firsts[entry];
+        }
+    }
+
+    // Class 'Table' mapping 64-bit keys to shape indices with linear probing in parallel primitive arrays.
+    // Keys may repeat (hash collisions); callers walk the probe sequence and confirm each candidate.
+    // The table grows with the number of distinct entries, so heavily duplicated input stays cache-resident
+    private static final class Table {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int mask = 1023;
+        private int size;
+
+        int slot(long key) {
+            return (int) key & mask;
+        }
+
+        int next(int slot) {
+            return (slot + 1) & mask;
+        }
+
+        boolean isUsed(int slot) {
+            return values[slot] != 0;
+        }
+
+        long key(int slot) {
+            return keys[slot];
+        }
+
+        int value(int slot) {
+            return values[slot] - 1;
+        }
+
+        // Method to fill the empty slot a probe ended on, doubling the table once it is half full
+        void put(int slot, long key, int value) {
+            keys[slot] = key;
+            values[slot] = value + 1;
+            if (++size * 2 > values.length)
+                grow();
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            mask = values.length - 1;
+            for (int s = 0; s < oldValues.length; s++) {
+                if (oldValues[s] != 0) {
+                    int slot = slot(oldKeys[s]);
+                    while (isUsed(slot)) {
+                        slot = next(slot);
+                    }
+                    keys[slot] = oldKeys[s];
+                    values[slot] = oldValues[s];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+// Importing necessary Java libraries
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+import jdk.jfr.*;
+
+// Class 'ShapeMetrics' counting and timing the geometry operations of every ShapesN variant and the batches.
+// Instrumentation is off unless the JVM starts with -Dshapes.metrics=true. ENABLED is a static final,
+// so when it is false the JIT folds every "if (ShapeMetrics.ENABLED)" guard and every begin()/end() pair
+// away and the instrumented methods compile to the same code as before.
+// Per call, getArea/getPerimeter/isSquare/isRightAngled bump a striped LongAdder, and one call in
+// SAMPLE_PERIOD is timed into a per-call histogram: timing every few-nanosecond call would cost more than
+// the call itself. Whole runs (the getRectangles/getTriangles builders and the batch kernels) are timed
+// into HDR-style histograms and emitted as "shapes.Run" JDK Flight Recorder events. Everything is readable
+// through snapshot() and the "shapes:type=ShapeMetrics" MBean
+final class ShapeMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("shapes.metrics");
+
+    // Metric ids: one per operation and shape type
+    public static final int TRIANGLE_AREA = 0;
+    public static final int TRIANGLE_PERIMETER = 1;
+    public static final int TRIANGLE_RIGHT_ANGLED = 2;
+    public static final int TRIANGLE_BUILD = 3;
+    public static final int RECTANGLE_AREA = 4;
+    public static final int RECTANGLE_PERIMETER = 5;
+    public static final int RECTANGLE_SQUARE = 6;
+    public static final int RECTANGLE_BUILD = 7;
+    public static final int RECTANGLE_RIGHT_ANGLED = 8;
+
+    // One per-shape call in this many is timed; a power of two
+    private static final int SAMPLE_PERIOD = 1024;
+
+    private static final String[] NAMES = {
+        "TriangleArea", "TrianglePerimeter", "TriangleRightAngled", "TriangleBuild",
+        "RectangleArea", "RectanglePerimeter", "RectangleSquare", "RectangleBuild", "RectangleRightAngled"
+    };
+    private static final String[] OPERATIONS = {
+        "getArea", "getPerimeter", "isRightAngled", "build", "getArea", "getPerimeter", "isSquare", "build", "isRightAngled"
+    };
+
+    private static final LongAdder[] CALLS = new LongAdder[NAMES.length];
+    private static final LongAdder[] SHAPES = new LongAdder[NAMES.length];
+    private static final Histogram[] RUNS = new Histogram[NAMES.length];
+    private static final Histogram[] SAMPLES = new Histogram[NAMES.length];
+
+    static {
+        for (int m = 0; m < NAMES.length; m++) {
+            CALLS[m] = new LongAdder();
+            SHAPES[m] = new LongAdder();
+            RUNS[m] = new Histogram();
+            SAMPLES[m] = new Histogram();
+        }
+        if (ENABLED)
+            registerMBean();
+    }
+
+    private ShapeMetrics() {
+    }
+
+    // Method to count one call of a per-shape operation, returning its start time if it is one of the
+    // sampled calls and 0 otherwise; call sites guard it with "ShapeMetrics.ENABLED" and hand the result
+    // to sampled() when the call returns
+    static long count(int metric) {
+        CALLS[metric].increment();
+        if ((ThreadLocalRandom.current().nextInt() & (SAMPLE_PERIOD - 1)) != 0)
+            return 0;
+        long start = System.nanoTime();
+        return start == 0 ? 1 : start;
+    }
+
+    // Method to finish timing a call that count() sampled; does nothing for 'start' 0
+    static void sampled(int metric, long start) {
+        if (start != 0)
+            SAMPLES[metric].record(System.nanoTime() - start);
+    }
+
+    // Method to start timing a run over many shapes; returns null (and costs nothing) when disabled
+    static Run begin(int metric) {
+        if (!ENABLED)
+            return null;
+        Run run = new Run();
+        run.metric = metric;
+        run.operation = OPERATIONS[metric];
+        run.shapeType = metric < RECTANGLE_AREA ? "Triangle" : "Rectangle";
+        run.begin();
+        run.startNanos = System.nanoTime();
+        return run;
+    }
+
+    // Method to finish timing a run that processed 'shapes' shapes
+    static void end(Run run, long shapes) {
+        if (run == null)
+            return;
+        RUNS[run.metric].record(System.nanoTime() - run.startNanos);
+        SHAPES[run.metric].add(shapes);
+        run.shapes = shapes;
+        run.commit();
+    }
+
+    // Method to capture every metric at once
+    static Snapshot snapshot() {
+        Stats[] stats = new Stats[NAMES.length];
+        for (int m = 0; m < NAMES.length; m++) {
+            stats[m] = new Stats(NAMES[m], CALLS[m].sum(), SHAPES[m].sum(), RUNS[m], SAMPLES[m]);
+        }
+        return new Snapshot(stats);
+    }
+
+    // Method to zero every counter and histogram
+    static void reset() {
+        for (int m = 0; m < NAMES.length; m++) {
+            CALLS[m].reset();
+            SHAPES[m].reset();
+            RUNS[m].reset();
+            SAMPLES[m].reset();
+        }
+    }
+
+    // Method to publish the metrics over JMX as "shapes:type=ShapeMetrics"; done automatically when enabled
+    static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("shapes:type=ShapeMetrics");
+            if (!server.isRegistered(name))
+                server.registerMBean(new Bean(), name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the ShapeMetrics MBean", e);
+        }
+    }
+
+    // JFR event for one timed run; the JFR duration is the run's wall time
+    @Name("shapes.Run")
+    @Label("Shape Run")
+    @Category("Shapes")
+    @Description("A geometry operation over a whole array or batch of shapes")
+    static final class Run extends jdk.jfr.Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Shape Type")
+        String shapeType;
+
+        @Label("Shapes")
+        long shapes;
+
+        // Not recorded by JFR: bookkeeping for the histograms
+        transient int metric;
+        transient long startNanos;
+    }
+
+    // Class 'Histogram' counting nanosecond latencies in log-linear buckets like HdrHistogram: values below
+    // 32 are exact, larger ones fall into 16 buckets per power of two (a relative error of at most 1/16)
+    static final class Histogram {
+        private static final int LINEAR = 32;
+        private static final int SUB_BUCKETS = 16;
+        private static final int BUCKETS = LINEAR + (63 - 5) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long v = Math.max(nanos, 0);
+            counts.incrementAndGet(bucket(v));
+            total.increment();
+            sum.add(v);
+            max.accumulateAndGet(v, Math::max);
+        }
+
+        // Method to return the value at or below which a fraction 'p' of the recorded values fall
+        long percentile(double p) {
+            long n = total.sum();
+            if (n == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank)
+                    return Math.min(upperBound(b), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int b = 0; b < BUCKETS; b++) {
+                counts.set(b, 0);
+            }
+            total.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        private static int bucket(long v) {
+            if (v < LINEAR)
+                return (int) v;
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+            return LINEAR + (exponent - 5) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int b) {
+            if (b < LINEAR)
+                return b;
+            int exponent = (b - LINEAR) / SUB_BUCKETS + 5;
+            int sub = (b - LINEAR) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 4)) - 1;
+        }
+    }
+
+    // Class 'Stats' holding one metric: per-call count and sampled call latencies, shapes processed in
+    // timed runs, and run latencies
+    static final class Stats {
+        public final String name;
+        public final long calls;
+        public final long sampledCalls;
+        public final long callP50Nanos;
+        public final long callP99Nanos;
+        public final long callMaxNanos;
+        public final long shapes;
+        public final long runs;
+        public final long totalNanos;
+        public final long p50Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        Stats(String name, long calls, long shapes, Histogram runs, Histogram samples) {
+            this.name = name;
+            this.calls = calls;
+            this.sampledCalls = samples.total.sum();
+            this.callP50Nanos = samples.percentile(0.50);
+            this.callP99Nanos = samples.percentile(0.99);
+            this.callMaxNanos = samples.max.get();
+            this.shapes = shapes;
+            this.runs = runs.total.sum();
+            this.totalNanos = runs.sum.sum();
+            this.p50Nanos = runs.percentile(0.50);
+            this.p99Nanos = runs.percentile(0.99);
+            this.maxNanos = runs.max.get();
+        }
+    }
+
+    // Class 'Snapshot' holding every metric at one point in time
+    static final class Snapshot {
+        private final Stats[] stats;
+
+        Snapshot(Stats[] stats) {
+            this.stats = stats;
+        }
+
+        // Getter method to retrieve one metric by id, e.g. ShapeMetrics.RECTANGLE_SQUARE
+        public Stats get(int metric) {
+            return stats[metric];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%-20s %12s %10s %10s %10s %12s %8s %12s %12s %12s%n",
+                    "metric", "calls", "call p50", "call p99", "call max", "shapes", "runs", "p50 ns", "p99 ns", "max ns"));
+            for (Stats s : stats) {
+                sb.append(String.format("%-20s %12d %10d %10d %10d %12d %8d %12d %12d %12d%n",
+                        s.name, s.calls, s.callP50Nanos, s.callP99Nanos, s.callMaxNanos,
+                        s.shapes, s.runs, s.p50Nanos, s.p99Nanos, s.maxNanos));
+            }
+            return sb.toString();
+        }
+    }
+
+    // Class 'Bean' exposing every metric as read-only JMX attributes named <metric><stat>,
+    // e.g. RectangleSquareCalls, RectangleSquareCallP99Nanos or TriangleBuildP99Nanos, plus a reset operation
+    private static final class Bean implements DynamicMBean {
+        private static final String[] STATS = { "Calls", "SampledCalls", "CallP50Nanos", "CallP99Nanos", "CallMaxNanos",
+                "Shapes", "Runs", "TotalNanos", "P50Nanos", "P99Nanos", "MaxNanos" };
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            for (int m = 0; m < NAMES.length; m++) {
+                if (!attribute.startsWith(NAMES[m]))
+                    continue;
+                String stat = attribute.substring(NAMES[m].length());
+                Stats s = new Stats(NAMES[m], CALLS[m].sum(), SHAPES[m].sum(), RUNS[m], SAMPLES[m]);
+                switch (stat) {
+                    case "Calls": return s.calls;
+                    case "SampledCalls": return s.sampledCalls;
+                    case "CallP50Nanos": return s.callP50Nanos;
+                    case "CallP99Nanos": return s.callP99Nanos;
+                    case "CallMaxNanos": return s.callMaxNanos;
+                    case "Shapes": return s.shapes;
+                    case "Runs": return s.runs;
+                    case "TotalNanos": return s.totalNanos;
+                    case "P50Nanos": return s.p50Nanos;
+                    case "P99Nanos": return s.p99Nanos;
+                    case "MaxNanos": return s.maxNanos;
+                    default: break;
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Unknown attributes are left out, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("ShapeMetrics attributes are read-only: " + attribute.getName());
+        }
+
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if (!actionName.equals("reset"))
+                throw new ReflectionException(new NoSuchMethodException(actionName));
+            reset();
+            return null;
+        }
+
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : NAMES) {
+                for (String stat : STATS) {
+                    attributes.add(new MBeanAttributeInfo(name + stat, "long", name + " " + stat, true, false, false));
+                }
+            }
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Zero every metric",
+                    new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(ShapeMetrics.class.getName(), "Geometry operation metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] { reset }, null);
+        }
+    }
+}
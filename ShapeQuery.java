@@ -0,0 +1,502 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'ShapeQuery' answering ad-hoc filters over a triangle or rectangle batch. Area, perimeter, the
+// isSquare/isRightAngled flag and the bounding box are computed once into columns when the query is
+// created; a filter is then a tree of predicates, e.g. areaAbove(100).and(isSquare()), evaluated one
+// predicate at a time over a selection vector (the ascending indices still in the result), each pass a
+// tight loop over one column. indexArea() and indexPerimeter() add optional sorted indexes: a range
+// predicate on an indexed column is answered by binary search in O(log n + k) instead of a full scan, and
+// within an and() the most selective indexed predicate is evaluated first so the others only see its matches
+final class ShapeQuery {
+    private static final int AREA = 0;
+    private static final int PERIMETER = 1;
+
+    private final ShapeBatch batch;
+    private final boolean rectangles;
+    private final int size;
+    private final double[][] columns;
+    private final boolean[] flags;
+    private final int[] minX;
+    private final int[] minY;
+    private final int[] maxX;
+    private final int[] maxY;
+    private final Index[] indexes = new Index[2];
+
+    // Constructor precomputing the columns of a rectangle batch
+    public ShapeQuery(RectangleBatch b) {
+        this(b, true);
+        b.isSquare(flags);
+        for (int i = 0; i < size; i++) {
+            minX[i] = Math.min(Math.min(b.x1[i], b.x2[i]), Math.min(b.x3[i], b.x4[i]));
+            minY[i] = Math.min(Math.min(b.y1[i], b.y2[i]), Math.min(b.y3[i], b.y4[i]));
+            maxX[i] = Math.max(Math.max(b.x1[i], b.x2[i]), Math.max(b.x3[i], b.x4[i]));
+            maxY[i] = Math.max(Math.max(b.y1[i], b.y2[i]), Math.max(b.y3[i], b.y4[i]));
+        }
+    }
+
+    // Constructor precomputing the columns of a triangle batch
+    public ShapeQuery(TriangleBatch b) {
+        this(b, false);
+        b.isRightAngled(flags);
+        for (int i = 0; i < size; i++) {
+            minX[i] = Math.min(b.x1[i], Math.min(b.x2[i], b.x3[i]));
+            minY[i] = Math.min(b.y1[i], Math.min(b.y2[i], b.y3[i]));
+            maxX[i] = Math.max(b.x1[i], Math.max(b.x2[i], b.x3[i]));
+            maxY[i] = Math.max(b.y1[i], Math.max(b.y2[i], b.y3[i]));
+        }
+    }
+
+    private ShapeQuery(ShapeBatch b, boolean rectangles) {
+        this.batch = b;
+        this.rectangles = rectangles;
+        this.size = b.size();
+        this.columns = new double[][] { new double[size], new double[size] };
+        this.flags = new boolean[size];
+        this.minX = new int[size];
+        this.minY = new int[size];
+        this.maxX = new int[size];
+        this.maxY = new int[size];
+        b.getAreas(columns[AREA]);
+        b.getPerimeters(columns[PERIMETER]);
+    }
+
+    // Getter method to retrieve the number of shapes queried
+    public int size() {
+        return size;
+    }
+
+    // Methods to build the sorted area or perimeter index; range predicates on the column use it from then on
+    public ShapeQuery indexArea() {
+        if (indexes[AREA] == null)
+            indexes[AREA] = new Index(columns[AREA]);
+        return this;
+    }
+
+    public ShapeQuery indexPerimeter() {
+        if (indexes[PERIMETER] == null)
+            indexes[PERIMETER] = new Index(columns[PERIMETER]);
+        return this;
+    }
+
+    // Method returning the indices of the matching shapes in ascending order
+    public int[] select(Predicate p) {
+        if (p.estimate(this) >= 0)
+            return p.lookup(this);
+        int[] out = new int[size];
+        return Arrays.copyOf(out, p.filter(this, null, size, out));
+    }
+
+    // Method counting the matching shapes
+    public int count(Predicate p) {
+        if (p.estimate(this) >= 0)
+            return p.lookup(this).length;
+        return p.filter(this, null, size, new int[size]);
+    }
+
+    // Method to print the matching shapes to a ShapeWriter, in ascending index order
+    public void print(Predicate p, ShapeWriter out) {
+        for (int i : select(p)) {
+            batch.print(i, out);
+        }
+    }
+
+    // Predicates on the area and perimeter columns; bounds are inclusive for the "Between" forms
+    public static Predicate areaAbove(double area) {
+        return new Range(AREA, Math.nextUp(area), Double.POSITIVE_INFINITY);
+    }
+
+    public static Predicate areaBelow(double area) {
+        return new Range(AREA, Double.NEGATIVE_INFINITY, Math.nextDown(area));
+    }
+
+    public static Predicate areaBetween(double min, double max) {
+        return new Range(AREA, min, max);
+    }
+
+    public static Predicate perimeterAbove(double perimeter) {
+        return new Range(PERIMETER, Math.nextUp(perimeter), Double.POSITIVE_INFINITY);
+    }
+
+    public static Predicate perimeterBelow(double perimeter) {
+        return new Range(PERIMETER, Double.NEGATIVE_INFINITY, Math.nextDown(perimeter));
+    }
+
+    public static Predicate perimeterBetween(double min, double max) {
+        return new Range(PERIMETER, min, max);
+    }
+
+    // Predicates on the exact shape flags; each only applies to its own shape type
+    public static Predicate isSquare() {
+        return new Flag(true);
+    }
+
+    public static Predicate isRightAngled() {
+        return new Flag(false);
+    }
+
+    // Predicate matching shapes whose bounding box overlaps the window, edges included (as RTree.search)
+    public static Predicate overlaps(int minX, int minY, int maxX, int maxY) {
+        return new Overlaps(minX, minY, maxX, maxY);
+    }
+
+    // Abstract class 'Predicate' for one node of a filter tree. filter() writes the members of
+    // selection[0..n) that match into 'out' in ascending order and returns how many there are; a null
+    // selection stands for every shape (n is then the query size). 'out' may be 'selection' itself
+    abstract static class Predicate {
+        abstract int filter(ShapeQuery q, int[] selection, int n, int[] out);
+
+        // Method returning how many shapes an index lookup would produce, or -1 when there is no index
+        int estimate(ShapeQuery q) {
+            return -1;
+        }
+
+        // Method returning the matches from the indexes, ascending. Predicates without an index fall
+        // back to a full scan, so lookup() is correct whatever estimate() says
+        int[] lookup(ShapeQuery q) {
+            int[] out = new int[q.size];
+            return Arrays.copyOf(out, filter(q, null, q.size, out));
+        }
+
+        // Methods combining predicates
+        public Predicate and(Predicate other) {
+            return new And(this, other);
+        }
+
+        public Predicate or(Predicate other) {
+            return new Or(this, other);
+        }
+
+        public Predicate negate() {
+            return new Not(this);
+        }
+    }
+
+    // Predicate 'Range' keeping shapes whose area or perimeter lies in [min, max]
+    private static final class Range extends Predicate {
+        private final int column;
+        private final double min;
+        private final double max;
+
+        Range(int column, double min, double max) {
+            this.column = column;
+            this.min = min;
+            this.max = max;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            if (selection == null && q.indexes[column] != null) {
+                int[] matches = lookup(q);
+                System.arraycopy(matches, 0, out, 0, matches.length);
+                return matches.length;
+            }
+            double[] values = q.columns[column];
+            int count = 0;
+            if (selection == null) {
+                for (int i = 0; i < n; i++) {
+                    double v = values[i];
+                    if (v >= min && v <= max)
+                        out[count++] = i;
+                }
+            } else {
+                for (int k = 0; k < n; k++) {
+                    int i = selection[k];
+                    double v = values[i];
+                    if (v >= min && v <= max)
+                        out[count++] = i;
+                }
+            }
+            return count;
+        }
+
+        int estimate(ShapeQuery q) {
+            Index index = q.indexes[column];
+            return index == null ? -1 : Math.max(0, index.to(max) - index.from(min));
+        }
+
+        int[] lookup(ShapeQuery q) {
+            Index index = q.indexes[column];
+            if (index == null)
+                return super.lookup(q);
+            int from = index.from(min);
+            int to = Math.max(from, index.to(max));
+            int[] matches = Arrays.copyOfRange(index.ids, from, to);
+            // Back into shape order, so the result combines with other selection vectors
+            Arrays.sort(matches);
+            return matches;
+        }
+    }
+
+    // Predicate 'Flag' keeping squares (of a rectangle query) or right-angled triangles (of a triangle query)
+    private static final class Flag extends Predicate {
+        private final boolean square;
+
+        Flag(boolean square) {
+            this.square = square;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            if (q.rectangles != square)
+                throw new IllegalStateException((square ? "isSquare" : "isRightAngled") + " does not apply to "
+                        + (q.rectangles ? "rectangles" : "triangles"));
+            boolean[] flags = q.flags;
+            int count = 0;
+            if (selection == null) {
+                for (int i = 0; i < n; i++) {
+                    if (flags[i])
+                        out[count++] = i;
+                }
+            } else {
+                for (int k = 0; k < n; k++) {
+                    if (flags[selection[k]])
+                        out[count++] = selection[k];
+                }
+            }
+            return count;
+        }
+    }
+
+    // Predicate 'Overlaps' keeping shapes whose bounding box overlaps a window
+    private static final class Overlaps extends Predicate {
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+
+        Overlaps(int minX, int minY, int maxX, int maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            int count = 0;
+            for (int k = 0; k < n; k++) {
+                int i = selection == null ? k : selection[k];
+                if (q.minX[i] <= maxX && q.maxX[i] >= minX && q.minY[i] <= maxY && q.maxY[i] >= minY)
+                    out[count++] = i;
+            }
+            return count;
+        }
+    }
+
+    // Predicate 'And' narrowing one selection vector through both sides, starting from an index when it can
+    private static final class And extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+
+        And(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            if (selection == null && estimate(q) >= 0) {
+                int[] matches = lookup(q);
+                System.arraycopy(matches, 0, out, 0, matches.length);
+                return matches.length;
+            }
+            int count = left.filter(q, selection, n, out);
+            return right.filter(q, out, count, out);
+        }
+
+        // The smaller of the two lookups bounds the result
+        int estimate(ShapeQuery q) {
+            int a = left.estimate(q);
+            int b = right.estimate(q);
+            return a < 0 ? b : b < 0 ? a : Math.min(a, b);
+        }
+
+        int[] lookup(ShapeQuery q) {
+            int a = left.estimate(q);
+            int b = right.estimate(q);
+            boolean fromLeft = b < 0 || (a >= 0 && a <= b);
+            int[] seed = (fromLeft ? left : right).lookup(q);
+            int count = (fromLeft ? right : left).filter(q, seed, seed.length, seed);
+            return Arrays.copyOf(seed, count);
+        }
+    }
+
+    // Predicate 'Or' merging the ascending matches of both sides
+    private static final class Or extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+
+        Or(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            if (selection == null && estimate(q) >= 0) {
+                int[] matches = lookup(q);
+                System.arraycopy(matches, 0, out, 0, matches.length);
+                return matches.length;
+            }
+            int[] a = new int[n];
+            int[] b = new int[n];
+            return union(a, left.filter(q, selection, n, a), b, right.filter(q, selection, n, b), out);
+        }
+
+        // Both sides must come from an index, otherwise one of them needs a full scan anyway
+        int estimate(ShapeQuery q) {
+            int a = left.estimate(q);
+            int b = right.estimate(q);
+            return a < 0 || b < 0 ? -1 : a + b;
+        }
+
+        int[] lookup(ShapeQuery q) {
+            int[] a = left.lookup(q);
+            int[] b = right.lookup(q);
+            int[] out = new int[a.length + b.length];
+            return Arrays.copyOf(out, union(a, a.length, b, b.length, out));
+        }
+
+        private static int union(int[] a, int na, int[] b, int nb, int[] out) {
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < na || j < nb) {
+                if (j == nb || (i < na && a[i] < b[j]))
+                    out[count++] = a[i++];
+                else if (i == na || b[j] < a[i])
+                    out[count++] = b[j++];
+                else {
+                    out[count++] = a[i++];
+                    j++;
+                }
+            }
+            return count;
+        }
+    }
+
+    // Predicate 'Not' keeping the members of the selection its operand rejects
+    private static final class Not extends Predicate {
+        private final Predicate operand;
+
+        Not(Predicate operand) {
+            this.operand = operand;
+        }
+
+        int filter(ShapeQuery q, int[] selection, int n, int[] out) {
+            int[] matches = new int[n];
+            int found = operand.filter(q, selection, n, matches);
+            int count = 0;
+            for (int k = 0, m = 0; k < n; k++) {
+                int i = selection == null ? k : selection[k];
+                if (m < found && matches[m] == i)
+                    m++;
+                else
+                    out[count++] = i;
+            }
+            return count;
+        }
+    }
+
+    // Class 'Index' holding the shape ids of one column sorted by value, with the values in the same order
+    // for binary search. Built with an LSD radix sort on the sortable bits of the doubles: O(n) and stable
+    private static final class Index {
+        private final double[] values;
+        private final int[] ids;
+
+        Index(double[] column) {
+            int n = column.length;
+            long[] keys = new long[n];
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                // Flipping the sign bit of positives and every bit of negatives orders doubles as unsigned longs
+                long bits = Double.doubleToLongBits(column[i]);
+                keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+                order[i] = i;
+            }
+            long[] keysBuffer = new long[n];
+            int[] orderBuffer = new int[n];
+            int[] counts = new int[1 << 16];
+            for (int shift = 0; shift < 64; shift += 16) {
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < n; i++) {
+                    counts[(int) (keys[i] >>> shift) & 0xFFFF]++;
+                }
+                // Skip digits every key shares, e.g. the exponent bits of similar values
+                if (n > 0 && counts[(int) (keys[0] >>> shift) & 0xFFFF] == n)
+                    continue;
+                for (int d = 0, sum = 0; d < counts.length; d++) {
+                    int c = counts[d];
+                    counts[d] = sum;
+                    sum += c;
+                }
+                for (int i = 0; i < n; i++) {
+                    int at = counts[(int) (keys[i] >>> shift) & 0xFFFF]++;
+                    keysBuffer[at] = keys[i];
+                    orderBuffer[at] = order[i];
+                }
+                long[] k = keys;
+                keys = keysBuffer;
+                keysBuffer = k;
+                int[] o = order;
+                order = orderBuffer;
+                orderBuffer = o;
+            }
+            values = new double[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = column[order[i]];
+            }
+            ids = order;
+        }
+
+        // Method returning the position of the first value >= min
+        int from(double min) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < min)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+
+        // Method returning the position after the last value <= max
+        int to(double max) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] <= max)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // Entry point timing a few filters over random rectangles, by full scan and with the sorted indexes
+    public static void main(String[] args) {
+        for (int n : Bench.sizes(args, 0)) {
+            ShapeQuery q = new ShapeQuery(new RectangleBatch(Bench.randomRectangles(n, 42)));
+            Predicate[] filters = {
+                areaAbove(9_000),
+                areaBetween(400, 500).and(isSquare()),
+                perimeterBetween(100, 120).or(areaBelow(10)),
+                overlaps(0, 0, 1_000, 1_000).and(isSquare().negate())
+            };
+            String[] names = { "area > 9000", "400 <= area <= 500 and square", "100 <= perimeter <= 120 or area < 10",
+                "overlaps (0,0)-(1000,1000) and not square" };
+            for (int pass = 0; pass < 2; pass++) {
+                if (pass == 1)
+                    q.indexArea().indexPerimeter();
+                for (int f = 0; f < filters.length; f++) {
+                    long start = System.nanoTime();
+                    int count = q.count(filters[f]);
+                    long nanos = System.nanoTime() - start;
+                    System.out.printf("%,d rectangles, %s, %s: %,d matches in %.3f ms%n", n,
+                            pass == 0 ? "scan" : "indexed", names[f], count, nanos / 1e6);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Class 'ShapeRegistry' keeping squares, right-angled triangles and running totals up to date as shapes
+// are added, removed and replaced, so nothing has to be rescanned. Every event costs O(1): a shape is
+// classified once when it arrives, and the live sets are dense arrays with a position index per handle,
+// so removal swaps the last member into the hole. add() returns an int handle naming the shape in later
+// events, which keeps the registry free of per-shape map entries. The triangle and rectangle types are
+// parameters measured through a Measures each, because every ShapesN variant has its own classes.
+// Methods are synchronized; snapshots are immutable and can be handed to other threads
+class ShapeRegistry<T, R> {
+    public static final int TRIANGLE = 1;
+    public static final int RECTANGLE = 2;
+
+    private static final int FREE = 0;
+
+    // Per-handle columns; a free handle has kind FREE and links to the next free handle through 'next'
+    private Object[] shapes = new Object[16];
+    private byte[] kinds = new byte[16];
+    private double[] areas = new double[16];
+    private double[] perimeters = new double[16];
+    private int[] next = new int[16];
+    private int handles;
+    private int firstFree = -1;
+
+    // Live sets of handles, each with the position of every member so it can be removed in O(1)
+    private final LiveSet squares = new LiveSet();
+    private final LiveSet rightAngled = new LiveSet();
+
+    private int triangles;
+    private int rectangles;
+    private final Sum totalArea = new Sum();
+    private final Sum totalPerimeter = new Sum();
+    private long version;
+
+    private final Measures<? super T> triangleMeasures;
+    private final Measures<? super R> rectangleMeasures;
+
+    // Class 'Measures' reading the area, the perimeter and the tracked flag (isRightAngled for
+    // triangles, isSquare for rectangles) of one shape type, e.g.
+    // new Measures<Rectangle>(Rectangle::getArea, Rectangle::getPerimeter, Rectangle::isSquare)
+    static final class Measures<S> {
+        private final ToDoubleFunction<? super S> area;
+        private final ToDoubleFunction<? super S> perimeter;
+        private final Predicate<? super S> flag;
+
+        Measures(ToDoubleFunction<? super S> area, ToDoubleFunction<? super S> perimeter, Predicate<? super S> flag) {
+            this.area = Objects.requireNonNull(area, "area");
+            this.perimeter = Objects.requireNonNull(perimeter, "perimeter");
+            this.flag = Objects.requireNonNull(flag, "flag");
+        }
+    }
+
+    // Constructor to create an empty registry measuring its triangles and rectangles as given
+    public ShapeRegistry(Measures<? super T> triangles, Measures<? super R> rectangles) {
+        this.triangleMeasures = Objects.requireNonNull(triangles, "triangles");
+        this.rectangleMeasures = Objects.requireNonNull(rectangles, "rectangles");
+    }
+
+    // Method to register a rectangle, returning its handle
+    public synchronized int addRectangle(R r) {
+        return put(-1, RECTANGLE, r, rectangleMeasures);
+    }
+
+    // Method to register a triangle, returning its handle
+    public synchronized int addTriangle(T t) {
+        return put(-1, TRIANGLE, t, triangleMeasures);
+    }
+
+    // Method to unregister a shape; returns false when the handle is not in use
+    public synchronized boolean remove(int handle) {
+        if (!isLive(handle))
+            return false;
+        take(handle);
+        if (triangles + rectangles == 0) {
+            totalArea.reset();
+            totalPerimeter.reset();
+        }
+        shapes[handle] = null;
+        kinds[handle] = FREE;
+        next[handle] = firstFree;
+        firstFree = handle;
+        version++;
+        return true;
+    }
+
+    // Methods to replace the shape behind a handle, e.g. after a shape moved; the handle stays the same.
+    // When the new shape is null or cannot be measured the old one stays registered
+    public synchronized void updateRectangle(int handle, R r) {
+        checkLive(handle);
+        put(handle, RECTANGLE, r, rectangleMeasures);
+    }
+
+    public synchronized void updateTriangle(int handle, T t) {
+        checkLive(handle);
+        put(handle, TRIANGLE, t, triangleMeasures);
+    }
+
+    // Getter methods to retrieve the shape behind a handle; the kind check makes the casts safe
+    @SuppressWarnings("unchecked")
+    public synchronized R getRectangle(int handle) {
+        checkKind(handle, RECTANGLE);
+        return (R) shapes[handle];
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized T getTriangle(int handle) {
+        checkKind(handle, TRIANGLE);
+        return (T) shapes[handle];
+    }
+
+    // Getter method to retrieve TRIANGLE or RECTANGLE for a live handle
+    public synchronized int getKind(int handle) {
+        checkLive(handle);
+        return kinds[handle];
+    }
+
+    // Getter methods to retrieve the running aggregates
+    public synchronized int size() {
+        return triangles + rectangles;
+    }
+
+    public synchronized int squareCount() {
+        return squares.size;
+    }
+
+    public synchronized int rightAngledCount() {
+        return rightAngled.size;
+    }
+
+    public synchronized double getTotalArea() {
+        return totalArea.value();
+    }
+
+    public synchronized double getTotalPerimeter() {
+        return totalPerimeter.value();
+    }
+
+    // Methods to pass the handle of every live square or right-angled triangle to 'action', in no
+    // particular order; 'action' must not add or remove shapes
+    public synchronized void forEachSquare(IntConsumer action) {
+        squares.forEach(action);
+    }
+
+    public synchronized void forEachRightAngled(IntConsumer action) {
+        rightAngled.forEach(action);
+    }
+
+    // Methods to copy the handles of the live squares or right-angled triangles
+    public synchronized int[] getSquares() {
+        return Arrays.copyOf(squares.members, squares.size);
+    }
+
+    public synchronized int[] getRightAngled() {
+        return Arrays.copyOf(rightAngled.members, rightAngled.size);
+    }
+
+    // Method to capture the aggregates in O(1); the live sets are left out so a snapshot stays cheap
+    // on millions of shapes (use getSquares()/getRightAngled() for the members)
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(version, triangles, rectangles, rightAngled.size, squares.size,
+                totalArea.value(), totalPerimeter.value());
+    }
+
+    // Class 'Snapshot' holding the aggregates of a registry at one point in time
+    static final class Snapshot {
+        public final long version;
+        public final int triangles;
+        public final int rectangles;
+        public final int rightAngled;
+        public final int squares;
+        public final double totalArea;
+        public final double totalPerimeter;
+
+        Snapshot(long version, int triangles, int rectangles, int rightAngled, int squares,
+                double totalArea, double totalPerimeter) {
+            this.version = version;
+            this.triangles = triangles;
+            this.rectangles = rectangles;
+            this.rightAngled = rightAngled;
+            this.squares = squares;
+            this.totalArea = totalArea;
+            this.totalPerimeter = totalPerimeter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("version %d: %d triangles (%d right-angled), %d rectangles (%d squares), "
+                    + "total area %.1f, total perimeter %.1f", version, triangles, rightAngled, rectangles,
+                    squares, totalArea, totalPerimeter);
+        }
+    }
+
+    // Helper classifying a shape once and adding it to the totals and live sets, under a new handle when
+    // 'handle' is -1 and otherwise in place of the shape behind it; returns the handle. The shape is
+    // checked and measured before anything changes, so a null shape or a throwing measure leaves the
+    // registry as it was
+    private <S> int put(int handle, int kind, S shape, Measures<? super S> measures) {
+        Objects.requireNonNull(shape, "shape");
+        double area = measures.area.applyAsDouble(shape);
+        double perimeter = measures.perimeter.applyAsDouble(shape);
+        boolean flag = measures.flag.test(shape);
+        if (handle < 0)
+            handle = allocate();
+        else
+            take(handle);
+        kinds[handle] = (byte) kind;
+        areas[handle] = area;
+        perimeters[handle] = perimeter;
+        if (kind == RECTANGLE) {
+            rectangles++;
+            if (flag)
+                squares.add(handle);
+        } else {
+            triangles++;
+            if (flag)
+                rightAngled.add(handle);
+        }
+        shapes[handle] = shape;
+        totalArea.add(areas[handle]);
+        totalPerimeter.add(perimeters[handle]);
+        version++;
+        return handle;
+    }
+
+    // Helper taking a shape back out of the totals and live sets, using the values stored when it was added
+    private void take(int handle) {
+        if (kinds[handle] == RECTANGLE) {
+            rectangles--;
+            squares.remove(handle);
+        } else {
+            triangles--;
+            rightAngled.remove(handle);
+        }
+        totalArea.add(-areas[handle]);
+        totalPerimeter.add(-perimeters[handle]);
+    }
+
+    private int allocate() {
+        if (firstFree >= 0) {
+            int handle = firstFree;
+            firstFree = next[handle];
+            return handle;
+        }
+        if (handles == shapes.length) {
+            int capacity = handles * 2;
+            shapes = Arrays.copyOf(shapes, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            areas = Arrays.copyOf(areas, capacity);
+            perimeters = Arrays.copyOf(perimeters, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        return handles++;
+    }
+
+    private boolean isLive(int handle) {
+        return handle >= 0 && handle < handles && kinds[handle] != FREE;
+    }
+
+    private void checkLive(int handle) {
+        if (!isLive(handle))
+            throw new IllegalArgumentException("No shape with handle " + handle);
+    }
+
+    private void checkKind(int handle, int kind) {
+        checkLive(handle);
+        if (kinds[handle] != kind)
+            throw new IllegalArgumentException("Handle " + handle + " is not a " + (kind == RECTANGLE ? "rectangle" : "triangle"));
+    }
+
+    // Self-check that an add or update failing on a null shape or a throwing measure changes nothing: the
+    // aggregates, live sets and version stay the same and no handle is used up
+    public static void main(String[] args) {
+        ToDoubleFunction<int[][]> area = s -> {
+            if (s.length == 0)
+                throw new IllegalArgumentException("Shape has no vertices");
+            return s.length;
+        };
+        Measures<int[][]> measures = new Measures<>(area, s -> 2.0 * s.length, s -> s.length == 4);
+        ShapeRegistry<int[][], int[][]> registry = new ShapeRegistry<>(measures, measures);
+        int square = registry.addRectangle(new int[4][2]);
+        int triangle = registry.addTriangle(new int[3][2]);
+        String before = registry.snapshot() + " " + Arrays.toString(registry.getSquares());
+        int failures = 0;
+        for (int[][] bad : new int[][][] {null, new int[0][]}) {
+            try {
+                registry.updateRectangle(square, bad);
+            } catch (RuntimeException e) {
+                failures++;
+            }
+            try {
+                registry.updateTriangle(triangle, bad);
+            } catch (RuntimeException e) {
+                failures++;
+            }
+            try {
+                registry.addRectangle(bad);
+            } catch (RuntimeException e) {
+                failures++;
+            }
+        }
+        String after = registry.snapshot() + " " + Arrays.toString(registry.getSquares());
+        boolean ok = failures == 6 && before.equals(after) && registry.getRectangle(square).length == 4
+                && registry.addTriangle(new int[3][2]) == 2;
+        System.out.println(after);
+        System.out.println(ok ? "failed updates leave the registry unchanged"
+                : "failed updates CHANGED the registry");
+    }
+
+    // Class 'LiveSet' holding handles densely with each member's position, for O(1) add, remove and iteration
+    private static final class LiveSet {
+        private int[] members = new int[16];
+        private int[] positions = new int[16];
+        private int size;
+
+        void add(int handle) {
+            if (size == members.length)
+                members = Arrays.copyOf(members, size * 2);
+            if (handle >= positions.length)
+                positions = Arrays.copyOf(positions, Math.max(handle + 1, positions.length * 2));
+            members[size] = handle;
+            positions[handle] = size + 1;
+            size++;
+        }
+
+        void remove(int handle) {
+            if (handle >= positions.length || positions[handle] == 0)
+                return;
+            int at = positions[handle] - 1;
+            int last = members[--size];
+            members[at] = last;
+            positions[last] = at + 1;
+            positions[handle] = 0;
+        }
+
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(members[i]);
+            }
+        }
+    }
+
+    // Class 'Sum' adding doubles with Neumaier compensation, so adding and later subtracting the same
+    // areas millions of times does not let rounding errors pile up in the running totals
+    private static final class Sum {
+        private double sum;
+        private double compensation;
+
+        void add(double value) {
+            double t = sum + value;
+            if (Math.abs(sum) >= Math.abs(value))
+                compensation += (sum - t) + value;
+            else
+                compensation += (value - t) + sum;
+            sum = t;
+        }
+
+        double value() {
+            return sum + compensation;
+        }
+
+        void reset() {
+            sum = 0;
+            compensation = 0;
+        }
+    }
+}
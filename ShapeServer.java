@@ -0,0 +1,397 @@
+// Importing necessary Java libraries
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Class 'ShapeServer' classifying batches of triangles and rectangles for other processes over TCP.
+// Protocol (big-endian, as DataOutputStream writes it), any number of requests per connection:
+//   request:  int vertices (3 = triangles, 4 = rectangles), int count, then count * vertices {x,y} int pairs
+//   response: int count, then count areas (double), count perimeters (double) and count flags (byte,
+//             1 when the shape is right-angled or a square); or int -1 and a UTF message on a bad request,
+//             after which the server closes the connection
+// Requests are answered in order, so a client may pipeline as many as it likes before reading; the server
+// only flushes when no further request is already buffered. Every connection gets its own thread: a
+// virtual thread when the JDK has them, a pooled platform thread otherwise
+class ShapeServer implements Closeable {
+    public static final int TRIANGLES = 3;
+    public static final int RECTANGLES = 4;
+    public static final int ERROR = -1;
+
+    // Largest byte array the JVM reliably allocates; request and response buffers must fit one
+    private static final int MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+
+    // Largest batch accepted in one request, so one request cannot make the server allocate without bound
+    public static final int MAX_BATCH = checkMaxBatch(Integer.getInteger("shapes.server.maxBatch", 1 << 16));
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = newConnectionExecutor();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    // Constructor binding the server to 'port' on the loopback address (0 picks a free port) and starting it
+    public ShapeServer(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    // Constructor binding the server to an address and starting to accept connections
+    public ShapeServer(InetSocketAddress address) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address, 128);
+        acceptor = new Thread(this::accept, "ShapeServer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Getter method to retrieve the port the server listens on
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Method to stop accepting connections and close every open one
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : open) {
+            socket.close();
+        }
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                open.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException | RejectedExecutionException e) {
+                if (!serverSocket.isClosed())
+                    System.err.println("ShapeServer: " + e);
+            }
+        }
+    }
+
+    // Method to answer the requests of one connection until the client closes it
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES))) {
+            byte[] request = new byte[0];
+            while (true) {
+                int vertices;
+                try {
+                    vertices = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                int count = in.readInt();
+                if (vertices != TRIANGLES && vertices != RECTANGLES) {
+                    fail(out, "Unsupported vertices per shape: " + vertices);
+                    return;
+                }
+                if (count < 0 || count > MAX_BATCH) {
+                    fail(out, "Batch of " + count + " shapes is outside [0, " + MAX_BATCH + "]");
+                    return;
+                }
+                // At most requestBytes(MAX_BATCH), which checkMaxBatch made sure fits an array
+                int bytes = (int) requestBytes(count, vertices);
+                if (request.length < bytes)
+                    request = new byte[bytes];
+                in.readFully(request, 0, bytes);
+                out.write(classify(vertices, count, ByteBuffer.wrap(request, 0, bytes).asIntBuffer()));
+                // Pipelined requests already in the buffer are answered before anything is sent
+                if (in.available() == 0)
+                    out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to answer
+        } finally {
+            open.remove(socket);
+        }
+    }
+
+    // Helper checking -Dshapes.server.maxBatch: the request and response buffers of a full batch of
+    // rectangles must each fit a byte array
+    private static int checkMaxBatch(int maxBatch) {
+        if (maxBatch < 0 || requestBytes(maxBatch, RECTANGLES) > MAX_ARRAY_BYTES
+                || Integer.BYTES + (long) maxBatch * (2 * Double.BYTES + 1) > MAX_ARRAY_BYTES)
+            throw new IllegalArgumentException("shapes.server.maxBatch " + maxBatch + " is outside [0, "
+                    + (MAX_ARRAY_BYTES / (RECTANGLES * 2 * Integer.BYTES)) + "]");
+        return maxBatch;
+    }
+
+    // Helper returning the bytes of 'count' shapes of 'vertices' {x,y} int pairs; long cannot overflow
+    static long requestBytes(int count, int vertices) {
+        return (long) count * vertices * 2 * Integer.BYTES;
+    }
+
+    // Method to classify one batch with the column-oriented batches and encode the response
+    static byte[] classify(int vertices, int count, IntBuffer coordinates) {
+        double[] areas = new double[count];
+        double[] perimeters = new double[count];
+        boolean[] flags = new boolean[count];
+        if (vertices == TRIANGLES) {
+            TriangleBatch batch = new TriangleBatch(count);
+            for (int i = 0, k = 0; i < count; i++, k += 6) {
+                batch.x1[i] = coordinates.get(k);
+                batch.y1[i] = coordinates.get(k + 1);
+                batch.x2[i] = coordinates.get(k + 2);
+                batch.y2[i] = coordinates.get(k + 3);
+                batch.x3[i] = coordinates.get(k + 4);
+                batch.y3[i] = coordinates.get(k + 5);
+            }
+            batch.getAreas(areas);
+            batch.getPerimeters(perimeters);
+            batch.isRightAngled(flags);
+        } else {
+            RectangleBatch batch = new RectangleBatch(count);
+            for (int i = 0, k = 0; i < count; i++, k += 8) {
+                batch.x1[i] = coordinates.get(k);
+                batch.y1[i] = coordinates.get(k + 1);
+                batch.x2[i] = coordinates.get(k + 2);
+                batch.y2[i] = coordinates.get(k + 3);
+                batch.x3[i] = coordinates.get(k + 4);
+                batch.y3[i] = coordinates.get(k + 5);
+                batch.x4[i] = coordinates.get(k + 6);
+                batch.y4[i] = coordinates.get(k + 7);
+            }
+            batch.getAreas(areas);
+            batch.getPerimeters(perimeters);
+            batch.isSquare(flags);
+        }
+        ByteBuffer response = ByteBuffer.allocate(Integer.BYTES + count * (2 * Double.BYTES + 1));
+        response.putInt(count);
+        response.asDoubleBuffer().put(areas).put(perimeters);
+        response.position(response.position() + 2 * count * Double.BYTES);
+        for (int i = 0; i < count; i++) {
+            response.put(flags[i] ? (byte) 1 : (byte) 0);
+        }
+        return response.array();
+    }
+
+    private static void fail(DataOutputStream out, String message) throws IOException {
+        out.writeInt(ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    // Helper returning a virtual-thread-per-task executor when the running JDK has one (looked up
+    // reflectively, so the class still compiles and runs on JDKs without virtual threads), else a cached pool
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "ShapeServer-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // Class 'Client' speaking the protocol on one connection; send() may be called several times before
+    // receive() to pipeline requests. A client is meant for one sending and one receiving thread
+    static class Client implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        // Constructor connecting to a server
+        public Client(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_BYTES));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_BYTES));
+        }
+
+        // Method to queue a request for the shapes of the same 3D coordinate arrays the 'main' methods use
+        public void send(int[][][] shapesArray) throws IOException {
+            int vertices = shapesArray.length == 0 ? TRIANGLES : shapesArray[0].length;
+            out.writeInt(vertices);
+            out.writeInt(shapesArray.length);
+            for (int[][] shape : shapesArray) {
+                for (int v = 0; v < vertices; v++) {
+                    out.writeInt(shape[v][0]);
+                    out.writeInt(shape[v][1]);
+                }
+            }
+        }
+
+        // Method to queue an already encoded request
+        public void send(byte[] request) throws IOException {
+            out.write(request);
+        }
+
+        // Method to send every queued request
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        // Method to read the response to the oldest unanswered request
+        public Response receive() throws IOException {
+            int count = in.readInt();
+            if (count == ERROR)
+                throw new IOException("Server rejected the request: " + in.readUTF());
+            Response response = new Response(count);
+            for (int i = 0; i < count; i++) {
+                response.areas[i] = in.readDouble();
+            }
+            for (int i = 0; i < count; i++) {
+                response.perimeters[i] = in.readDouble();
+            }
+            for (int i = 0; i < count; i++) {
+                response.flags[i] = in.readByte() != 0;
+            }
+            return response;
+        }
+
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        // Method to encode a request once, so a load generator can resend it without re-encoding
+        public static byte[] encode(int[][][] shapesArray) {
+            int vertices = shapesArray[0].length;
+            long bytes = 2 * Integer.BYTES + requestBytes(shapesArray.length, vertices);
+            if (bytes > MAX_ARRAY_BYTES)
+                throw new IllegalArgumentException("Request of " + shapesArray.length + " shapes needs " + bytes
+                        + " bytes, more than one array holds; send it in smaller batches");
+            ByteBuffer request = ByteBuffer.allocate((int) bytes);
+            request.putInt(vertices).putInt(shapesArray.length);
+            for (int[][] shape : shapesArray) {
+                for (int v = 0; v < vertices; v++) {
+                    request.putInt(shape[v][0]).putInt(shape[v][1]);
+                }
+            }
+            return request.array();
+        }
+    }
+
+    // Class 'Response' holding the classification of one batch, in request order
+    static class Response {
+        final double[] areas;
+        final double[] perimeters;
+        final boolean[] flags;
+
+        Response(int count) {
+            areas = new double[count];
+            perimeters = new double[count];
+            flags = new boolean[count];
+        }
+
+        // Getter method to retrieve the number of shapes in the batch
+        public int size() {
+            return flags.length;
+        }
+    }
+
+    // Method to load a server from 'connections' clients, each keeping up to 'depth' requests of 'batch'
+    // shapes in flight for 'seconds' seconds, and print throughput and latency percentiles
+    public static void load(String host, int port, int connections, int depth, int batch, int seconds)
+            throws Exception {
+        byte[][] requests = {
+            Client.encode(Bench.randomRectangles(batch, 42)),
+            Client.encode(Bench.randomTriangles(batch, 43))
+        };
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            Client client = new Client(host, port);
+            Semaphore window = new Semaphore(depth);
+            BlockingQueue<Long> sent = new ArrayBlockingQueue<>(depth);
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int r = 0; System.nanoTime() < deadline; r++) {
+                        window.acquire();
+                        sent.add(System.nanoTime());
+                        client.send(requests[(r + connection) & 1]);
+                        client.flush();
+                    }
+                    window.acquire(depth);
+                    client.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "ShapeServer-load-sender");
+            sender.setDaemon(true);
+            sender.start();
+            threads[c] = new Thread(() -> {
+                long[] own = new long[1024];
+                int n = 0;
+                try {
+                    while (true) {
+                        client.receive();
+                        long latency = System.nanoTime() - sent.take();
+                        if (n == own.length)
+                            own = Arrays.copyOf(own, n * 2);
+                        own[n++] = latency;
+                        window.release();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // The sender closed the connection after its last response
+                }
+                latencies[connection] = own;
+                counts[connection] = n;
+            }, "ShapeServer-load-receiver");
+            threads[c].start();
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int total = 0;
+        for (int n : counts) {
+            total += n;
+        }
+        long[] all = new long[total];
+        for (int c = 0, k = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, k, counts[c]);
+            k += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d connections, depth %d, %d shapes per request: %d requests in %.1f s%n",
+                connections, depth, batch, total, elapsed);
+        System.out.printf("throughput %.0f requests/s, %.0f shapes/s%n", total / elapsed, total * (double) batch / elapsed);
+        System.out.printf("latency ms: p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return Double.NaN;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(i, 0)] / 1e6;
+    }
+
+    // Entry point:
+    //   java ShapeServer [port]                     serve on the loopback address until killed
+    //   java ShapeServer load host port [connections depth batch seconds]
+    //   java ShapeServer loopback [connections depth batch seconds]   start a server and load it in one JVM
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("load")) {
+            load(args[1], Integer.parseInt(args[2]), intArg(args, 3, 4), intArg(args, 4, 8),
+                    intArg(args, 5, 256), intArg(args, 6, 10));
+        } else if (args.length > 0 && args[0].equals("loopback")) {
+            try (ShapeServer server = new ShapeServer(0)) {
+                load(InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(), intArg(args, 1, 4),
+                        intArg(args, 2, 8), intArg(args, 3, 256), intArg(args, 4, 10));
+            }
+        } else {
+            ShapeServer server = new ShapeServer(intArg(args, 0, 7878));
+            System.out.println("ShapeServer listening on port " + server.getPort());
+            Thread.currentThread().join();
+        }
+    }
+
+    private static int intArg(String[] args, int i, int fallback) {
+        return args.length > i ? (int) Double.parseDouble(args[i]) : fallback;
+    }
+}
@@ -0,0 +1,146 @@
+// Importing necessary Java libraries
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+
+// Class 'ShapeWriter' buffering shape output and flushing it in large chunks.
+// TEXT mode writes the same "{x,y}" lines as Point.print(); BINARY mode writes, per shape,
+// the vertex count followed by little-endian int {x,y} pairs and skips the heading lines
+class ShapeWriter implements Closeable, Flushable {
+    public enum Mode { TEXT, BINARY }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final WritableByteChannel channel;
+    private final OutputStream stream;
+    private final Mode mode;
+    private final ByteBuffer buffer;
+
+    // Scratch space for the digits of one int, filled from the end
+    private final byte[] digits = new byte[11];
+
+    // Constructor writing text to an output stream, e.g. System.out
+    public ShapeWriter(OutputStream out) {
+        this(out, Mode.TEXT);
+    }
+
+    // Constructor writing to an output stream in the given mode
+    public ShapeWriter(OutputStream out, Mode mode) {
+        this(Channels.newChannel(out), out, mode, DEFAULT_BUFFER_SIZE);
+    }
+
+    // Constructor writing to a channel in the given mode with a buffer of 'bufferSize' bytes
+    public ShapeWriter(WritableByteChannel channel, Mode mode, int bufferSize) {
+        this(channel, null, mode, bufferSize);
+    }
+
+    private ShapeWriter(WritableByteChannel channel, OutputStream stream, Mode mode, int bufferSize) {
+        // The largest single record is a text point: two ints, braces, comma and line separator
+        if (bufferSize < 32)
+            throw new IllegalArgumentException("Buffer too small: " + bufferSize);
+        this.channel = channel;
+        this.stream = stream;
+        this.mode = mode;
+        this.buffer = ByteBuffer.allocate(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Getter method to retrieve the output mode
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Method to write a heading such as "These are the squares:" (text mode only), encoded as UTF-8
+    public void writeLine(String line) {
+        if (mode != Mode.TEXT)
+            return;
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        for (int from = 0; from < bytes.length; ) {
+            ensure(1);
+            int n = Math.min(buffer.remaining(), bytes.length - from);
+            buffer.put(bytes, from, n);
+            from += n;
+        }
+        ensure(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    // Method to mark the start of a shape with 'vertices' points (binary mode only)
+    public void beginShape(int vertices) {
+        if (mode != Mode.BINARY)
+            return;
+        ensure(Integer.BYTES);
+        buffer.putInt(vertices);
+    }
+
+    // Method to write one point
+    public void writePoint(int x, int y) {
+        if (mode == Mode.BINARY) {
+            ensure(2 * Integer.BYTES);
+            buffer.putInt(x).putInt(y);
+            return;
+        }
+        ensure(2 * digits.length + 3 + LINE_SEPARATOR.length);
+        buffer.put((byte) '{');
+        putInt(x);
+        buffer.put((byte) ',');
+        putInt(y);
+        buffer.put((byte) '}');
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    // Method to write all buffered bytes to the underlying channel
+    public void flush() {
+        try {
+            drain();
+            if (stream != null)
+                stream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Method to flush and close the underlying channel
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Helper formatting an int as ASCII digits straight into the buffer, without a String
+    private void putInt(int value) {
+        int at = digits.length;
+        // Working with the negative value also covers Integer.MIN_VALUE
+        int v = value < 0 ? value : -value;
+        do {
+            int q = v / 10;
+            digits[--at] = (byte) ('0' + (q * 10 - v));
+            v = q;
+        } while (v != 0);
+        if (value < 0)
+            digits[--at] = '-';
+        buffer.put(digits, at, digits.length - at);
+    }
+
+    // Helper making room for 'bytes' more bytes, draining the buffer when it is full
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
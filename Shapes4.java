@@ -7,7 +7,9 @@ interface Interface {
     public int getX();
     public int getY();
     public void print();
+    public void print(ShapeWriter out);
     public double distance(Interface p1);
+    public double squaredDistance(Interface p1);
 }
 
 // Define an abstract class with three points and abstract methods for area and perimeter
@@ -26,6 +28,14 @@ abstract class Abstract {
         p2.print();
         p3.print();
     }
+
+    // Method to print the coordinates of the three points to a ShapeWriter
+    public void print(ShapeWriter out) {
+        out.beginShape(3);
+        p1.print(out);
+        p2.print(out);
+        p3.print(out);
+    }
 }
 
 // Implementation of the Interface for a 2D point
@@ -53,17 +63,35 @@ class Point implements Interface {
         System.out.println("{" + getX() + "," + getY() + "}");
     }
 
+    // Method to print the coordinates of the Point to a buffered ShapeWriter
+    public void print(ShapeWriter out) {
+        out.writePoint(x, y);
+    }
+
     // Method to calculate distance between two points
     public double distance(Interface p) {
-        int a = x - p.getX();
-        int b = y - p.getY();
-        double d = Math.sqrt((a * a) + (b * b));
+        long a = (long) x - p.getX();
+        long b = (long) y - p.getY();
+        double d = Math.sqrt(((double) a * a) + ((double) b * b));
         return d;
     }
+
+    // Method to calculate the squared distance between two points without a square root, in double so
+    // points at opposite ends of the int range cannot overflow it; exact while it is below 2^53
+    public double squaredDistance(Interface p) {
+        long a = (long) x - p.getX();
+        long b = (long) y - p.getY();
+        return ((double) a * a) + ((double) b * b);
+    }
 }
 
 // Triangle class extending the Abstract class
 class Triangle extends Abstract {
+    // Memoized side lengths, area and perimeter: null unless memoize() was called, NaN until computed.
+    // Subclasses keep their own memoized values in this same array, sized by cacheSize()
+    private static final int AREA = 3;
+    private static final int PERIMETER = 4;
+    protected double[] cache;
 
     // Constructor to initialize three points of the triangle
     public Triangle(Interface p1, Interface p2, Interface p3) {
@@ -74,28 +102,45 @@ class Triangle extends Abstract {
 
     // Implementation of abstract method to calculate area of the triangle
     public double getArea() {
-        int x1 = p1.getX();
-        int y1 = p1.getY();
-
-        int x2 = p2.getX();
-        int y2 = p2.getY();
-
-        int x3 = p3.getX();
-        int y3 = p3.getY();
-
-        int side1 = x1 * (y2 - y3);
-        int side2 = x2 * (y3 - y1);
-        int side3 = x3 * (y1 - y2);
-
-        return Math.abs((1.0 / 2) * (side1 + side2 + side3));
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.TRIANGLE_AREA) : 0;
+        try {
+            if (cache != null && !Double.isNaN(cache[AREA]))
+                return cache[AREA];
+            int x1 = p1.getX();
+            int y1 = p1.getY();
+
+            int x2 = p2.getX();
+            int y2 = p2.getY();
+
+            int x3 = p3.getX();
+            int y3 = p3.getY();
+
+            int side1 = x1 * (y2 - y3);
+            int side2 = x2 * (y3 - y1);
+            int side3 = x3 * (y1 - y2);
+
+            double area = Math.abs((1.0 / 2) * (side1 + side2 + side3));
+            if (cache != null)
+                cache[AREA] = area;
+            return area;
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.TRIANGLE_AREA, sample);
+        }
     }
 
     // Implementation of abstract method to calculate perimeter of the triangle
     public double getPerimeter() {
-        double side1 = p1.distance(p2);
-        double side2 = p1.distance(p3);
-        double side3 = p2.distance(p3);
-        return (side1 + side2 + side3);
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.TRIANGLE_PERIMETER) : 0;
+        try {
+            if (cache != null)
+                return cachedPerimeter();
+            double side1 = p1.distance(p2);
+            double side2 = p1.distance(p3);
+            double side3 = p2.distance(p3);
+            return (side1 + side2 + side3);
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.TRIANGLE_PERIMETER, sample);
+        }
     }
 
     // Print method to print the three points
@@ -103,18 +148,70 @@ class Triangle extends Abstract {
         super.print(); // Call the print method of the superclass
     }
 
+    // Overridden method to print the three points to a ShapeWriter
+    public void print(ShapeWriter out) {
+        super.print(out);
+    }
+
     // Method to check if the triangle is right-angled
     public boolean isRightAngled() {
-        double side1 = p1.distance(p2);
-        double side2 = p1.distance(p3);
-        double side3 = p2.distance(p3);
-        if ((side1 * side1 + side2 * side2) == side3 * side3)
-            return true;
-        if ((side2 * side2 + side3 * side3) == side1 * side1)
-            return true;
-        if ((side3 * side3 + side1 * side1) == side2 * side2)
-            return true;
-        return false;
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.TRIANGLE_RIGHT_ANGLED) : 0;
+        try {
+            // Checking the Pythagorean theorem at each vertex exactly, with integer dot products
+            return ExactPredicates.isRightAngled(p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                    p3.getX(), p3.getY());
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.TRIANGLE_RIGHT_ANGLED, sample);
+        }
+    }
+
+    // Method to write the bounding box of the triangle into 'box' as {minX, minY, maxX, maxY}
+    public void getBounds(int[] box) {
+        box[0] = Math.min(p1.getX(), Math.min(p2.getX(), p3.getX()));
+        box[1] = Math.min(p1.getY(), Math.min(p2.getY(), p3.getY()));
+        box[2] = Math.max(p1.getX(), Math.max(p2.getX(), p3.getX()));
+        box[3] = Math.max(p1.getY(), Math.max(p2.getY(), p3.getY()));
+    }
+
+    // Method to check if the point (x, y) lies inside the triangle or on its edges
+    public boolean contains(int x, int y) {
+        return ExactPredicates.containsTriangle(x, y, p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                p3.getX(), p3.getY());
+    }
+
+    // Method to turn on memoization: each side length, the area and the perimeter are then
+    // computed at most once and shared by every later call
+    public Triangle memoize() {
+        if (cache == null) {
+            cache = new double[cacheSize()];
+            Arrays.fill(cache, Double.NaN);
+        }
+        return this;
+    }
+
+    // Helper returning how many values memoize() keeps
+    protected int cacheSize() {
+        return 5;
+    }
+
+    // Method to drop the memoized values, e.g. after one of the points has been replaced
+    public void invalidate() {
+        if (cache != null)
+            Arrays.fill(cache, Double.NaN);
+    }
+
+    // Helper returning side 0 (p1-p2), 1 (p1-p3) or 2 (p2-p3), computing it on first use
+    private double side(int k) {
+        if (Double.isNaN(cache[k]))
+            cache[k] = k == 0 ? p1.distance(p2) : k == 1 ? p1.distance(p3) : p2.distance(p3);
+        return cache[k];
+    }
+
+    // Helper returning the perimeter from the memoized side lengths
+    private double cachedPerimeter() {
+        if (Double.isNaN(cache[PERIMETER]))
+            cache[PERIMETER] = side(0) + side(1) + side(2);
+        return cache[PERIMETER];
     }
 }
 
@@ -122,6 +219,12 @@ class Triangle extends Abstract {
 class Rectangle extends Triangle {
     private Interface p4;
 
+    // Positions of the memoized length, width, area and perimeter in the inherited cache
+    private static final int LENGTH = 0;
+    private static final int WIDTH = 1;
+    private static final int AREA = 2;
+    private static final int PERIMETER = 3;
+
     // Constructor to initialize four points of the rectangle
     public Rectangle(Interface p1, Interface p2, Interface p3, Interface p4) {
         super(p1, p2, p3); // Call the constructor of the Triangle (the 'super' class)
@@ -130,16 +233,30 @@ class Rectangle extends Triangle {
 
     // Implementation of abstract method to calculate area of the rectangle
     public double getArea() {
-        double length = p1.distance(p2);
-        double width = p1.distance(p4);
-        return length * width;
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.RECTANGLE_AREA) : 0;
+        try {
+            if (cache != null)
+                return cachedArea();
+            double length = p1.distance(p2);
+            double width = p1.distance(p4);
+            return length * width;
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.RECTANGLE_AREA, sample);
+        }
     }
 
     // Implementation of abstract method to calculate perimeter of the rectangle
     public double getPerimeter() {
-        double length = p1.distance(p2);
-        double width = p1.distance(p4);
-        return 2 * (length + width);
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.RECTANGLE_PERIMETER) : 0;
+        try {
+            if (cache != null)
+                return cachedPerimeter();
+            double length = p1.distance(p2);
+            double width = p1.distance(p4);
+            return 2 * (length + width);
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.RECTANGLE_PERIMETER, sample);
+        }
     }
 
     // Print method to print the four points
@@ -148,19 +265,167 @@ class Rectangle extends Triangle {
         p4.print();
     }
 
+    // Overridden method to print the four points to a ShapeWriter as one shape
+    public void print(ShapeWriter out) {
+        out.beginShape(4);
+        p1.print(out);
+        p2.print(out);
+        p3.print(out);
+        p4.print(out);
+    }
+
     // Method to check if the rectangle is a square
     public boolean isSquare() {
-        double length = p1.distance(p2);
-        double width = p1.distance(p4);
-        if (length == width)
-            return true;
-        return false;
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.RECTANGLE_SQUARE) : 0;
+        try {
+            // Check if the squared length and width are equal, so no square root is needed
+            return ExactPredicates.isSquare(p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                    p4.getX(), p4.getY());
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.RECTANGLE_SQUARE, sample);
+        }
+    }
+
+    // Overridden method to check if the rectangle has a right angle between its first three points,
+    // counted under its own metric instead of the triangle's
+    public boolean isRightAngled() {
+        long sample = ShapeMetrics.ENABLED ? ShapeMetrics.count(ShapeMetrics.RECTANGLE_RIGHT_ANGLED) : 0;
+        try {
+            return ExactPredicates.isRightAngled(p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                    p3.getX(), p3.getY());
+        } finally {
+            ShapeMetrics.sampled(ShapeMetrics.RECTANGLE_RIGHT_ANGLED, sample);
+        }
+    }
+
+    // Overridden method to write the bounding box of the rectangle into 'box' as {minX, minY, maxX, maxY}
+    public void getBounds(int[] box) {
+        box[0] = Math.min(Math.min(p1.getX(), p2.getX()), Math.min(p3.getX(), p4.getX()));
+        box[1] = Math.min(Math.min(p1.getY(), p2.getY()), Math.min(p3.getY(), p4.getY()));
+        box[2] = Math.max(Math.max(p1.getX(), p2.getX()), Math.max(p3.getX(), p4.getX()));
+        box[3] = Math.max(Math.max(p1.getY(), p2.getY()), Math.max(p3.getY(), p4.getY()));
+    }
+
+    // Overridden method to check if the point (x, y) lies inside the rectangle or on its edges
+    public boolean contains(int x, int y) {
+        return ExactPredicates.containsQuadrilateral(x, y, p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+                p3.getX(), p3.getY(), p4.getX(), p4.getY());
+    }
+
+    // Overridden method to turn on memoization: the length, width, area and perimeter are then
+    // computed at most once and shared by every later call
+    public Rectangle memoize() {
+        super.memoize();
+        return this;
+    }
+
+    // Overridden helper sizing the cache for the length, width, area and perimeter
+    protected int cacheSize() {
+        return 4;
+    }
+
+    // Helpers returning the memoized length (p1-p2) and width (p1-p4), computing them on first use
+    private double length() {
+        if (Double.isNaN(cache[LENGTH]))
+            cache[LENGTH] = p1.distance(p2);
+        return cache[LENGTH];
+    }
+
+    private double width() {
+        if (Double.isNaN(cache[WIDTH]))
+            cache[WIDTH] = p1.distance(p4);
+        return cache[WIDTH];
+    }
+
+    // Helpers returning the area and perimeter from the memoized length and width
+    private double cachedArea() {
+        if (Double.isNaN(cache[AREA]))
+            cache[AREA] = length() * width();
+        return cache[AREA];
+    }
+
+    private double cachedPerimeter() {
+        if (Double.isNaN(cache[PERIMETER]))
+            cache[PERIMETER] = 2 * (length() + width());
+        return cache[PERIMETER];
+    }
+}
+
+// Definition of the 'Polygon' class extending 'Abstract' for shapes with any number of vertices.
+// The vertices are kept packed as {x0, y0, x1, y1, ...} in one int array; p1, p2 and p3 only mirror
+// the first three vertices for code written against 'Abstract'
+class Polygon extends Abstract {
+    private final int[] vertices;
+
+    // Constructor to initialize a 'Polygon' from packed coordinates; the array is used as is, not copied
+    public Polygon(int[] vertices) {
+        this.vertices = PolygonGeometry.checkVertices(vertices);
+        this.p1 = new Point(vertices[0], vertices[1]);
+        this.p2 = new Point(vertices[2], vertices[3]);
+        this.p3 = new Point(vertices[4], vertices[5]);
+    }
+
+    // Constructor to initialize a 'Polygon' from the {{x,y},...} format the 'main' methods use
+    public Polygon(int[][] points) {
+        this(PolygonGeometry.pack(points));
+    }
+
+    // Getter methods to retrieve the number of vertices and the coordinates of vertex 'i'
+    public int getVertexCount() {
+        return vertices.length / 2;
+    }
+
+    public int getX(int i) {
+        return vertices[2 * i];
+    }
+
+    public int getY(int i) {
+        return vertices[2 * i + 1];
+    }
+
+    // Overridden methods to calculate the area (shoelace formula) and perimeter from the packed coordinates
+    public double getArea() {
+        return PolygonGeometry.area(vertices);
+    }
+
+    public double getPerimeter() {
+        return PolygonGeometry.perimeter(vertices);
+    }
+
+    // Method to check if the polygon is convex, in O(n)
+    public boolean isConvex() {
+        return PolygonGeometry.isConvex(vertices);
+    }
+
+    // Method to check if no two edges cross or touch, apart from neighbours at their shared vertex. This
+    // takes O(n log n) with a sweep line, not O(n): the linear-time methods are far too intricate to use
+    public boolean isSimple() {
+        return PolygonGeometry.isSimple(vertices);
+    }
+
+    // Overridden methods to print the coordinates of every vertex to System.out or a ShapeWriter
+    public void print() {
+        PolygonGeometry.print(vertices);
+    }
+
+    public void print(ShapeWriter out) {
+        PolygonGeometry.print(vertices, out);
+    }
+
+    // Method to write the bounding box of the polygon into 'box' as {minX, minY, maxX, maxY}
+    public void getBounds(int[] box) {
+        PolygonGeometry.getBounds(vertices, box);
     }
 }
 
 // Main class for testing the shapes
 public class Shapes4 {
     public static void main(String[] args) {
+        // "bench [sizes...]" runs the benchmark suite instead of the sample data
+        if (args.length > 0 && args[0].equals("bench")) {
+            benchmark(Bench.sizes(args, 1));
+            return;
+        }
 
         // Sample data for rectangles and triangles
         int[][][] rectanglesArray = {
@@ -182,8 +447,10 @@ public class Shapes4 {
         Triangle[] triangles = getTriangles(trianglesArray);
 
         // Printing squares and right-angled triangles
-        printSquares(rectangles);
-        printRightAngledTriangles(triangles);
+        ShapeWriter out = new ShapeWriter(System.out);
+        printSquares(rectangles, out);
+        printRightAngledTriangles(triangles, out);
+        out.flush();
     }
 
     // Method to print squares from an array of rectangles
@@ -206,9 +473,48 @@ public class Shapes4 {
         }
     }
 
+    // Method to print squares from an array of rectangles through a buffered ShapeWriter
+    public static void printSquares(Rectangle[] rectangles, ShapeWriter out) {
+        out.writeLine("These are the squares:");
+        for (int i = 0; i < rectangles.length; i++) {
+            if (rectangles[i].isSquare()) {
+                rectangles[i].print(out);
+            }
+        }
+    }
+
+    // Method to print right-angled triangles from an array of triangles through a buffered ShapeWriter
+    public static void printRightAngledTriangles(Triangle[] triangles, ShapeWriter out) {
+        out.writeLine("These are the right-angled triangles:");
+        for (int i = 0; i < triangles.length; i++) {
+            if (triangles[i].isRightAngled()) {
+                triangles[i].print(out);
+            }
+        }
+    }
+
+    // Method to print squares, classifying the rectangles in parallel but printing them in order
+    public static void printSquares(Rectangle[] rectangles, ParallelClassifier classifier) {
+        int[] squares = classifier.select(rectangles.length, i -> rectangles[i].isSquare());
+        System.out.println("These are the squares:");
+        for (int i = 0; i < squares.length; i++) {
+            rectangles[squares[i]].print();
+        }
+    }
+
+    // Method to print right-angled triangles, classifying the triangles in parallel but printing them in order
+    public static void printRightAngledTriangles(Triangle[] triangles, ParallelClassifier classifier) {
+        int[] rightAngled = classifier.select(triangles.length, i -> triangles[i].isRightAngled());
+        System.out.println("These are the right-angled triangles:");
+        for (int i = 0; i < rightAngled.length; i++) {
+            triangles[rightAngled[i]].print();
+        }
+    }
+
     // Method to create an array of rectangles from a 3D array of rectangle coordinates
     public static Rectangle[] getRectangles(int[][][] rectanglesArray) {
-        Rectangle[] rectangles = new Rectangle[5];
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.RECTANGLE_BUILD);
+        Rectangle[] rectangles = new Rectangle[rectanglesArray.length];
         for (int i = 0; i < rectangles.length; i++) {
             Point p1 = new Point(rectanglesArray[i][0][0], rectanglesArray[i][0][1]);
             Point p2 = new Point(rectanglesArray[i][1][0], rectanglesArray[i][1][1]);
@@ -217,12 +523,14 @@ public class Shapes4 {
             Rectangle r = new Rectangle(p1, p2, p3, p4);
             rectangles[i] = r;
         }
+        ShapeMetrics.end(run, rectangles.length);
         return rectangles;
     }
 
     // Method to create an array of triangles from a 3D array of triangle coordinates
     public static Triangle[] getTriangles(int[][][] trianglesArray) {
-        Triangle[] triangles = new Triangle[4];
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.TRIANGLE_BUILD);
+        Triangle[] triangles = new Triangle[trianglesArray.length];
         for (int i = 0; i < triangles.length; i++) {
             Point p1 = new Point(trianglesArray[i][0][0], trianglesArray[i][0][1]);
             Point p2 = new Point(trianglesArray[i][1][0], trianglesArray[i][1][1]);
@@ -230,6 +538,149 @@ public class Shapes4 {
             Triangle t = new Triangle(p1, p2, p3);
             triangles[i] = t;
         }
+        ShapeMetrics.end(run, triangles.length);
         return triangles;
     }
+
+    // Method to convert a 3D array of rectangle coordinates into Rectangle objects that share
+    // one canonical Point per distinct vertex, interned through 'pool'
+    public static Rectangle[] getRectangles(int[][][] rectanglesArray, PointPool<Point> pool) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.RECTANGLE_BUILD);
+        Rectangle[] rectangles = new Rectangle[rectanglesArray.length];
+        for (int i = 0; i < rectangles.length; i++) {
+            int[][] v = rectanglesArray[i];
+            rectangles[i] = new Rectangle(pool.intern(v[0][0], v[0][1]), pool.intern(v[1][0], v[1][1]),
+                    pool.intern(v[2][0], v[2][1]), pool.intern(v[3][0], v[3][1]));
+        }
+        ShapeMetrics.end(run, rectangles.length);
+        return rectangles;
+    }
+
+    // Method to convert a 3D array of rectangle coordinates into Rectangle objects, validating the entries
+    // in parallel on the caller's classifier first and leaving out every one that is not a rectangle;
+    // rejections go to 'report'
+    public static Rectangle[] getValidRectangles(int[][][] rectanglesArray, ParallelClassifier classifier,
+            ShapeWriter report) {
+        RectangleValidator.Report validation = RectangleValidator.validate(rectanglesArray, classifier);
+        if (validation.rejected() > 0)
+            validation.write(report);
+        return getRectangles(validation.accepted(rectanglesArray));
+    }
+
+    // Method to convert a 3D array of triangle coordinates into Triangle objects that share
+    // one canonical Point per distinct vertex, interned through 'pool'
+    public static Triangle[] getTriangles(int[][][] trianglesArray, PointPool<Point> pool) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.TRIANGLE_BUILD);
+        Triangle[] triangles = new Triangle[trianglesArray.length];
+        for (int i = 0; i < triangles.length; i++) {
+            int[][] v = trianglesArray[i];
+            triangles[i] = new Triangle(pool.intern(v[0][0], v[0][1]), pool.intern(v[1][0], v[1][1]),
+                    pool.intern(v[2][0], v[2][1]));
+        }
+        ShapeMetrics.end(run, triangles.length);
+        return triangles;
+    }
+
+    // Method to convert a 3D array of polygon coordinates, one {{x,y},...} array per polygon, into 'Polygon' objects
+    public static Polygon[] getPolygons(int[][][] polygonsArray) {
+        Polygon[] polygons = new Polygon[polygonsArray.length];
+        for (int i = 0; i < polygons.length; i++) {
+            polygons[i] = new Polygon(polygonsArray[i]);
+        }
+        return polygons;
+    }
+
+    // Method to build a spatial index over the bounding boxes of an array of rectangles
+    public static RTree index(Rectangle[] rectangles) {
+        return RTree.bulkLoad(rectangles.length, (i, box) -> rectangles[i].getBounds(box));
+    }
+
+    // Method to build a spatial index over the bounding boxes of an array of triangles
+    public static RTree index(Triangle[] triangles) {
+        return RTree.bulkLoad(triangles.length, (i, box) -> triangles[i].getBounds(box));
+    }
+
+    // Method to build a k-d tree over an array of points for nearest-vertex, radius and window queries
+    public static KdTree index(Point[] points) {
+        int[] xs = new int[points.length];
+        int[] ys = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            xs[i] = points[i].getX();
+            ys[i] = points[i].getY();
+        }
+        return new KdTree(xs, ys);
+    }
+
+    // Method to create a ShapeRegistry that measures this file's triangles and rectangles
+    public static ShapeRegistry<Triangle, Rectangle> registry() {
+        return new ShapeRegistry<>(
+                new ShapeRegistry.Measures<Triangle>(Triangle::getArea, Triangle::getPerimeter, Triangle::isRightAngled),
+                new ShapeRegistry.Measures<Rectangle>(Rectangle::getArea, Rectangle::getPerimeter, Rectangle::isSquare));
+    }
+
+    // Method to prepare counting and listing the right triangles formed by any three of the points
+    public static RightTriangles rightTriangles(Point[] points) {
+        int[] xs = new int[points.length];
+        int[] ys = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            xs[i] = points[i].getX();
+            ys[i] = points[i].getY();
+        }
+        return new RightTriangles(xs, ys);
+    }
+
+    // Method to report every pair of rectangles whose bounding boxes overlap, with a sweep line instead of a
+    // loop over all pairs; for axis-aligned rectangles these are exactly the overlapping rectangles
+    public static long overlaps(Rectangle[] rectangles, OverlapSweep.PairConsumer action) {
+        return OverlapSweep.boxes(rectangles.length, (i, box) -> rectangles[i].getBounds(box), action);
+    }
+
+    // Method to compute the area and perimeter covered by axis-aligned rectangles, counting overlaps once
+    // where summing getArea counts them again for every rectangle on top
+    public static UnionArea.Result unionArea(Rectangle[] rectangles) {
+        return UnionArea.of(rectangles.length, (i, box) -> rectangles[i].getBounds(box));
+    }
+
+    // Method to benchmark this variant; run with "java Shapes4 bench [sizes...]"
+    public static void benchmark(int[] sizes) {
+        Bench bench = new Bench("Shapes4");
+        for (int n : sizes) {
+            int[][][] rectanglesArray = Bench.randomRectangles(n, 42);
+            int[][][] trianglesArray = Bench.randomTriangles(n, 43);
+            bench.run("getRectangles", n, () -> getRectangles(rectanglesArray).length);
+            bench.run("getTriangles", n, () -> getTriangles(trianglesArray).length);
+            bench.run("getRectangles (pooled)", n, () -> getRectangles(rectanglesArray, new PointPool<>(n, Point::new)).length);
+            bench.run("getTriangles (pooled)", n, () -> getTriangles(trianglesArray, new PointPool<>(n, Point::new)).length);
+
+            // Monomorphic call sites: every receiver has the same class
+            Rectangle[] rectangles = getRectangles(rectanglesArray);
+            Triangle[] triangles = getTriangles(trianglesArray);
+            bench.sum("Rectangle.getArea", rectangles, Rectangle::getArea);
+            bench.sum("Rectangle.getPerimeter", rectangles, Rectangle::getPerimeter);
+            bench.count("Rectangle.isSquare", rectangles, Rectangle::isSquare);
+            bench.sum("Triangle.getArea", triangles, Triangle::getArea);
+            bench.sum("Triangle.getPerimeter", triangles, Triangle::getPerimeter);
+            bench.count("Triangle.isRightAngled", triangles, Triangle::isRightAngled);
+
+            // Bimorphic and megamorphic call sites: two and four receiver classes behind 'Abstract'
+            Abstract[] bimorphic = new Abstract[n];
+            Abstract[] megamorphic = new Abstract[n];
+            for (int i = 0; i < n; i++) {
+                Triangle t = triangles[i];
+                int[][] v = rectanglesArray[i];
+                bimorphic[i] = (i & 1) == 0 ? t : rectangles[i];
+                switch (i & 3) {
+                    case 0: megamorphic[i] = t; break;
+                    case 1: megamorphic[i] = rectangles[i]; break;
+                    case 2: megamorphic[i] = new Triangle(t.p1, t.p2, t.p3) { }; break;
+                    default: megamorphic[i] = new Rectangle(new Point(v[0][0], v[0][1]), new Point(v[1][0], v[1][1]),
+                            new Point(v[2][0], v[2][1]), new Point(v[3][0], v[3][1])) { };
+                }
+            }
+            bench.sum("Abstract.getArea (bimorphic)", bimorphic, Abstract::getArea);
+            bench.sum("Abstract.getPerimeter (bimorphic)", bimorphic, Abstract::getPerimeter);
+            bench.sum("Abstract.getArea (megamorphic)", megamorphic, Abstract::getArea);
+            bench.sum("Abstract.getPerimeter (megamorphic)", megamorphic, Abstract::getPerimeter);
+        }
+    }
 }
@@ -0,0 +1,192 @@
+// Importing necessary Java libraries
+import java.util.*;
+
+// Class 'TopK' keeping the k largest (or smallest) values of a stream, such as getArea over every
+// rectangle, each with the id of the shape that produced it. Memory is fixed at k entries: a binary heap
+// in two primitive arrays whose root is the weakest kept value, so a value that does not make the cut
+// costs one comparison and one that does costs O(log k). Partial results from several threads combine
+// with merge()
+final class TopK {
+    private final int k;
+    // +1 keeps the largest values, -1 the smallest; values are stored multiplied by it
+    private final int sign;
+    private final double[] values;
+    private final long[] ids;
+    private int size;
+    private long count;
+
+    private TopK(int k, int sign) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        this.sign = sign;
+        this.values = new double[k];
+        this.ids = new long[k];
+    }
+
+    // Methods to create an aggregator keeping the k largest or the k smallest values
+    public static TopK largest(int k) {
+        return new TopK(k, 1);
+    }
+
+    public static TopK smallest(int k) {
+        return new TopK(k, -1);
+    }
+
+    // Method to offer one value produced by shape 'id'; NaN values are ignored
+    public void add(double value, long id) {
+        if (value != value)
+            return;
+        count++;
+        double v = sign * value;
+        if (size < k) {
+            values[size] = v;
+            ids[size] = id;
+            up(size++);
+        } else if (v > values[0]) {
+            values[0] = v;
+            ids[0] = id;
+            down(0);
+        }
+    }
+
+    // Method to offer values[0..n), produced by shapes firstId, firstId + 1, ..., e.g. the output of
+    // RectangleBatch.getAreas for one chunk of a larger stream
+    public void addAll(double[] values, int n, long firstId) {
+        for (int i = 0; i < n; i++) {
+            add(values[i], firstId + i);
+        }
+    }
+
+    // Method to fold the entries of another aggregator of the same kind into this one
+    public TopK merge(TopK other) {
+        if (other.sign != sign)
+            throw new IllegalArgumentException("Cannot merge largest and smallest aggregators");
+        long offered = count + other.count;
+        for (int i = 0; i < other.size; i++) {
+            add(sign * other.values[i], other.ids[i]);
+        }
+        count = offered;
+        return this;
+    }
+
+    // Getter method to retrieve the number of entries kept, at most k
+    public int size() {
+        return size;
+    }
+
+    // Getter method to retrieve the number of values offered, merged aggregators included
+    public long count() {
+        return count;
+    }
+
+    // Method returning the value a new one has to beat to be kept (the k-th best so far)
+    public double threshold() {
+        if (size < k)
+            return sign > 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        return sign * values[0];
+    }
+
+    // Methods returning the kept values and their shape ids, best first
+    public double[] getValues() {
+        int[] order = order();
+        double[] result = new double[size];
+        for (int r = 0; r < size; r++) {
+            result[r] = sign * values[order[r]];
+        }
+        return result;
+    }
+
+    public long[] getIds() {
+        int[] order = order();
+        long[] result = new long[size];
+        for (int r = 0; r < size; r++) {
+            result[r] = ids[order[r]];
+        }
+        return result;
+    }
+
+    // Helper returning the heap slots from best to worst, ties broken by the smaller id
+    private int[] order() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Double.compare(values[b], values[a]);
+            return c != 0 ? c : Long.compare(ids[a], ids[b]);
+        });
+        int[] result = new int[size];
+        for (int r = 0; r < size; r++) {
+            result[r] = order[r];
+        }
+        return result;
+    }
+
+    // Helpers restoring the min-heap order after slot 'i' got a smaller or a larger value
+    private void up(int i) {
+        double v = values[i];
+        long id = ids[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (values[parent] <= v)
+                break;
+            values[i] = values[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        values[i] = v;
+        ids[i] = id;
+    }
+
+    private void down(int i) {
+        double v = values[i];
+        long id = ids[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && values[child + 1] < values[child])
+                child++;
+            if (v <= values[child])
+                break;
+            values[i] = values[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        values[i] = v;
+        ids[i] = id;
+    }
+
+    // Entry point finding the largest rectangle areas of a random stream chunk by chunk, with one
+    // aggregator per chunk merged at the end, and checking them against a full sort
+    public static void main(String[] args) {
+        int k = 1_000;
+        int chunk = 1 << 16;
+        for (int n : Bench.sizes(args, 0)) {
+            int[][][] rectanglesArray = Bench.randomRectangles(n, 42);
+            long start = System.nanoTime();
+            TopK top = largest(k);
+            double[] areas = new double[chunk];
+            for (int from = 0; from < n; from += chunk) {
+                int to = Math.min(n, from + chunk);
+                RectangleBatch b = new RectangleBatch(Arrays.copyOfRange(rectanglesArray, from, to));
+                b.getAreas(areas);
+                TopK partial = largest(k);
+                partial.addAll(areas, to - from, from);
+                top.merge(partial);
+            }
+            long nanos = System.nanoTime() - start;
+            double[] all = new double[n];
+            new RectangleBatch(rectanglesArray).getAreas(all);
+            Arrays.sort(all);
+            double[] found = top.getValues();
+            boolean exact = true;
+            for (int r = 0; r < found.length; r++) {
+                exact &= found[r] == all[n - 1 - r];
+            }
+            System.out.printf("%,d rectangles: top %d areas %s .. %s in %.3f ms, %s%n", n, found.length,
+                    found.length > 0 ? found[0] : "-", found.length > 0 ? found[found.length - 1] : "-",
+                    nanos / 1e6, exact ? "matches a full sort" : "DIFFERS from a full sort");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// Importing necessary Java libraries
+import java.lang.Math;
+import java.io.*;
+import java.util.*;
+
+// Definition of the 'TriangleBatch' class storing the three vertices of every triangle column-wise
+class TriangleBatch extends ShapeBatch {
+    final int[] x1;
+    final int[] y1;
+    final int[] x2;
+    final int[] y2;
+    final int[] x3;
+    final int[] y3;
+
+    // Constructor to create an empty batch able to hold 'size' triangles
+    public TriangleBatch(int size) {
+        super(size);
+        x1 = new int[size];
+        y1 = new int[size];
+        x2 = new int[size];
+        y2 = new int[size];
+        x3 = new int[size];
+        y3 = new int[size];
+    }
+
+    // Constructor to copy the triangles out of the same 3D array the 'main' methods use
+    public TriangleBatch(int[][][] trianglesArray) {
+        this(trianglesArray.length);
+        for (int i = 0; i < size; i++) {
+            set(i, trianglesArray[i]);
+        }
+    }
+
+    // Constructor to gather the triangles given as vertex ids from PointPool.ids, 3 per shape, reading
+    // each vertex's coordinates from the pool without creating a point
+    public TriangleBatch(PointPool<?> pool, int[] ids) {
+        this(ids.length / 3);
+        if (ids.length % 3 != 0)
+            throw new IllegalArgumentException("Vertex id count " + ids.length + " is not a multiple of 3");
+        for (int i = 0; i < size; i++) {
+            x1[i] = pool.getX(ids[3 * i]);
+            y1[i] = pool.getY(ids[3 * i]);
+            x2[i] = pool.getX(ids[3 * i + 1]);
+            y2[i] = pool.getY(ids[3 * i + 1]);
+            x3[i] = pool.getX(ids[3 * i + 2]);
+            y3[i] = pool.getY(ids[3 * i + 2]);
+        }
+    }
+
+    // Method to store the vertices of triangle 'i' from a {{x,y},{x,y},{x,y}} array
+    public void set(int i, int[][] vertices) {
+        x1[i] = vertices[0][0];
+        y1[i] = vertices[0][1];
+        x2[i] = vertices[1][0];
+        y2[i] = vertices[1][1];
+        x3[i] = vertices[2][0];
+        y3[i] = vertices[2][1];
+    }
+
+    // Method to calculate the area of triangle 'i' using the shoelace formula
+    public double getArea(int i) {
+        long side1 = (long) x1[i] * ((long) y2[i] - y3[i]);
+        long side2 = (long) x2[i] * ((long) y3[i] - y1[i]);
+        long side3 = (long) x3[i] * ((long) y1[i] - y2[i]);
+        return Math.abs((1.0 / 2) * (side1 + side2 + side3));
+    }
+
+    // Method to calculate the perimeter of triangle 'i'
+    public double getPerimeter(int i) {
+        double side1 = distance(x1[i], y1[i], x2[i], y2[i]);
+        double side2 = distance(x1[i], y1[i], x3[i], y3[i]);
+        double side3 = distance(x2[i], y2[i], x3[i], y3[i]);
+        return (side1 + side2 + side3);
+    }
+
+    // Method to check if triangle 'i' is a right-angled triangle, exactly and without a square root
+    public boolean isRightAngled(int i) {
+        return ExactPredicates.isRightAngled(x1[i], y1[i], x2[i], y2[i], x3[i], y3[i]);
+    }
+
+    // Methods to calculate the areas and perimeters of all triangles with the selected BatchKernels
+    public void getAreas(double[] areas) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.TRIANGLE_AREA);
+        BatchKernels.current().triangleAreas(this, areas);
+        ShapeMetrics.end(run, size);
+    }
+
+    public void getPerimeters(double[] perimeters) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.TRIANGLE_PERIMETER);
+        BatchKernels.current().trianglePerimeters(this, perimeters);
+        ShapeMetrics.end(run, size);
+    }
+
+    // Method to calculate the squared lengths of the sides p1-p2, p1-p3 and p2-p3 of every triangle, in
+    // double so no coordinates can overflow them; exact while they are below 2^53
+    public void getSquaredSides(double[] side1, double[] side2, double[] side3) {
+        BatchKernels.current().triangleSquaredSides(this, side1, side2, side3);
+    }
+
+    // Method to flag every right-angled triangle in 'result', returning how many were found
+    public int isRightAngled(boolean[] result) {
+        ShapeMetrics.Run run = ShapeMetrics.begin(ShapeMetrics.TRIANGLE_RIGHT_ANGLED);
+        int found = BatchKernels.current().rightAngled(this, result);
+        ShapeMetrics.end(run, size);
+        return found;
+    }
+
+    // Method to print the coordinates of the three vertices of triangle 'i'
+    public void print(int i) {
+        printPoint(x1[i], y1[i]);
+        printPoint(x2[i], y2[i]);
+        printPoint(x3[i], y3[i]);
+    }
+
+    // Method to print the coordinates of the three vertices of triangle 'i' to a ShapeWriter
+    public void print(int i, ShapeWriter out) {
+        out.beginShape(3);
+        out.writePoint(x1[i], y1[i]);
+        out.writePoint(x2[i], y2[i]);
+        out.writePoint(x3[i], y3[i]);
+    }
+}
@@ -0,0 +1,290 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.concurrent.*;
+
+// Class 'UnionArea' computing the area and the perimeter of the region covered by many axis-aligned
+// rectangles, counting every overlap once, exactly and in O(n log n). A vertical line sweeps over the
+// rectangles' left and right edges; a segment tree over the distinct y-coordinates (compressed to their
+// ranks) tracks how much of the line is covered and in how many separate pieces. Between two events the
+// covered length times the distance gives area and the pieces give horizontal boundary; at each event the
+// change in covered length is vertical boundary. The x-range is cut into strips swept in parallel, each
+// starting from the rectangles that already cross its left edge, so the strips add up to the exact totals.
+// Results are longs: exact for coordinates within +/-2^30. Rectangles with zero width or height cover nothing
+final class UnionArea {
+    // Number of rectangles per strip below which more strips do not pay for their setup
+    private static final int MIN_STRIP_SIZE = 1 << 16;
+
+    private UnionArea() {
+    }
+
+    // Class 'Result' holding the covered area and the length of its boundary
+    static final class Result {
+        public final long area;
+        public final long perimeter;
+
+        Result(long area, long perimeter) {
+            this.area = area;
+            this.perimeter = perimeter;
+        }
+
+        @Override
+        public String toString() {
+            return "area " + area + ", perimeter " + perimeter;
+        }
+    }
+
+    // Method to compute the union of 'n' rectangles given by their bounds, e.g. with
+    // (i, box) -> rectangles[i].getBounds(box), with as many strips as there are processors
+    static Result of(int n, RTree.Bounds bounds) {
+        return of(n, bounds, Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / MIN_STRIP_SIZE)));
+    }
+
+    // Method to compute the union with a chosen number of parallel strips
+    static Result of(int n, RTree.Bounds bounds, int strips) {
+        int[] box = new int[4];
+        int[] minX = new int[n];
+        int[] minY = new int[n];
+        int[] maxX = new int[n];
+        int[] maxY = new int[n];
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            bounds.getBounds(i, box);
+            if (box[0] == box[2] || box[1] == box[3])
+                continue;
+            minX[kept] = box[0];
+            minY[kept] = box[1];
+            maxX[kept] = box[2];
+            maxY[kept] = box[3];
+            kept++;
+        }
+        return of(Arrays.copyOf(minX, kept), Arrays.copyOf(minY, kept), Arrays.copyOf(maxX, kept),
+                Arrays.copyOf(maxY, kept), strips);
+    }
+
+    // Helper cutting the x-range into strips at quantiles of the left edges and sweeping them in parallel
+    private static Result of(int[] minX, int[] minY, int[] maxX, int[] maxY, int strips) {
+        int n = minX.length;
+        if (n == 0)
+            return new Result(0, 0);
+        int[] lefts = minX.clone();
+        Arrays.sort(lefts);
+        long end = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            end = Math.max(end, maxX[i]);
+        }
+        // Strip s covers [cuts[s], cuts[s + 1]); the last one ends past the rightmost edge so that its
+        // removals are swept too. Cuts may repeat, leaving a strip empty
+        long[] cuts = new long[Math.max(1, strips) + 1];
+        for (int s = 0; s < cuts.length - 1; s++) {
+            cuts[s] = lefts[(int) ((long) s * n / (cuts.length - 1))];
+        }
+        cuts[cuts.length - 1] = end + 1;
+        List<Callable<long[]>> tasks = new ArrayList<>();
+        for (int s = 0; s < cuts.length - 1; s++) {
+            long from = cuts[s];
+            long to = cuts[s + 1];
+            if (from < to)
+                tasks.add(() -> sweep(minX, minY, maxX, maxY, from, to));
+        }
+        long area = 0;
+        long perimeter = 0;
+        try {
+            for (Future<long[]> strip : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                long[] r = strip.get();
+                area += r[0];
+                perimeter += r[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sweeping", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Strip sweep failed", e.getCause());
+        }
+        return new Result(area, perimeter);
+    }
+
+    // Helper sweeping the strip [from, to), returning {area, perimeter} of the union inside it. The events
+    // at x = from belong to this strip, so the rectangles active just before it (minX < from <= maxX) are
+    // loaded first without counting anything
+    private static long[] sweep(int[] minX, int[] minY, int[] maxX, int[] maxY, long from, long to) {
+        int n = minX.length;
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (minX[i] < to && maxX[i] >= from)
+                count++;
+        }
+        int[] members = new int[count];
+        int[] ys = new int[2 * count];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (minX[i] < to && maxX[i] >= from) {
+                ys[2 * k] = minY[i];
+                ys[2 * k + 1] = maxY[i];
+                members[k++] = i;
+            }
+        }
+        CoverTree tree = new CoverTree(ys);
+        // Event = x in the high half, 0 to add or 1 to remove, then the rectangle: adds sort first at equal
+        // x, so rectangles that only share an edge never open a gap and the edge is not counted
+        long[] events = new long[2 * count];
+        int e = 0;
+        for (int i : members) {
+            if (minX[i] < from)
+                tree.update(minY[i], maxY[i], 1);
+            else
+                events[e++] = ((long) minX[i] << 32) | i;
+            if (maxX[i] < to)
+                events[e++] = ((long) maxX[i] << 32) | (1L << 31) | i;
+        }
+        Arrays.sort(events, 0, e);
+        long area = 0;
+        long perimeter = 0;
+        long x = from;
+        for (int k = 0; k < e; k++) {
+            long ex = events[k] >> 32;
+            perimeter += 2 * tree.pieces() * (ex - x);
+            area += tree.covered() * (ex - x);
+            x = ex;
+            int i = (int) (events[k] & 0x7FFFFFFF);
+            long before = tree.covered();
+            tree.update(minY[i], maxY[i], (events[k] & (1L << 31)) == 0 ? 1 : -1);
+            perimeter += Math.abs(tree.covered() - before);
+        }
+        perimeter += 2 * tree.pieces() * (to - x);
+        area += tree.covered() * (to - x);
+        return new long[] { area, perimeter };
+    }
+
+    // Class 'CoverTree' counting how many rectangles cover each elementary interval between consecutive
+    // distinct y-coordinates, with the covered length and number of separate covered pieces per subtree.
+    // Counts only ever return to zero through matching removals, so nothing has to be pushed down
+    private static final class CoverTree {
+        private final int[] ys;
+        private final int[] cover;
+        private final long[] length;
+        private final int[] pieces;
+        // Bit 0: the subtree's lowest interval is covered; bit 1: its highest one is
+        private final byte[] ends;
+
+        CoverTree(int[] coordinates) {
+            int[] sorted = coordinates.clone();
+            Arrays.sort(sorted);
+            int m = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (m == 0 || sorted[i] != sorted[m - 1])
+                    sorted[m++] = sorted[i];
+            }
+            ys = Arrays.copyOf(sorted, m);
+            int nodes = 4 * Math.max(1, m - 1);
+            cover = new int[nodes];
+            length = new long[nodes];
+            pieces = new int[nodes];
+            ends = new byte[nodes];
+        }
+
+        long covered() {
+            return length[1];
+        }
+
+        int pieces() {
+            return pieces[1];
+        }
+
+        // Method to add 'delta' to the cover count of [y1, y2)
+        void update(int y1, int y2, int delta) {
+            int from = Arrays.binarySearch(ys, y1);
+            int to = Arrays.binarySearch(ys, y2);
+            update(1, 0, ys.length - 1, from, to, delta);
+        }
+
+        private void update(int node, int l, int r, int from, int to, int delta) {
+            if (from <= l && r <= to) {
+                cover[node] += delta;
+            } else {
+                int mid = (l + r) >>> 1;
+                if (from < mid)
+                    update(2 * node, l, mid, from, to, delta);
+                if (to > mid)
+                    update(2 * node + 1, mid, r, from, to, delta);
+            }
+            pull(node, l, r);
+        }
+
+        private void pull(int node, int l, int r) {
+            if (cover[node] > 0) {
+                length[node] = (long) ys[r] - ys[l];
+                pieces[node] = 1;
+                ends[node] = 3;
+            } else if (r - l == 1) {
+                length[node] = 0;
+                pieces[node] = 0;
+                ends[node] = 0;
+            } else {
+                int a = 2 * node;
+                int b = 2 * node + 1;
+                length[node] = length[a] + length[b];
+                // Two pieces meeting at the middle coordinate are one piece
+                pieces[node] = pieces[a] + pieces[b] - ((ends[a] & 2) != 0 && (ends[b] & 1) != 0 ? 1 : 0);
+                ends[node] = (byte) ((ends[a] & 1) | (ends[b] & 2));
+            }
+        }
+    }
+
+    // Entry point computing the union of random rectangles with one strip and in parallel, comparing both
+    // with the plain sum of getArea, and checking small inputs against a grid count
+    public static void main(String[] args) {
+        for (int n : Bench.sizes(args, 0)) {
+            int[][][] rectanglesArray = Bench.randomRectangles(n, 42);
+            RTree.Bounds bounds = (i, box) -> {
+                int[][] r = rectanglesArray[i];
+                box[0] = Math.min(r[0][0], r[2][0]);
+                box[1] = Math.min(r[0][1], r[2][1]);
+                box[2] = Math.max(r[0][0], r[2][0]);
+                box[3] = Math.max(r[0][1], r[2][1]);
+            };
+            long start = System.nanoTime();
+            Result serial = of(n, bounds, 1);
+            long serialNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            Result parallel = of(n, bounds);
+            long parallelNanos = System.nanoTime() - start;
+            double sum = 0;
+            RectangleBatch batch = new RectangleBatch(rectanglesArray);
+            for (int i = 0; i < n; i++) {
+                sum += batch.getArea(i);
+            }
+            String check = "";
+            if (n <= 1_000) {
+                Result grid = grid(n, bounds);
+                check = grid.area == serial.area && grid.perimeter == serial.perimeter ? ", matches a grid count"
+                        : ", DIFFERS from a grid count (" + grid + ")";
+            }
+            System.out.printf("%,d rectangles: union %s (sum of areas %.0f); %.1f ms in one strip, %.1f ms in parallel%s%s%n",
+                    n, serial, sum, serialNanos / 1e6, parallelNanos / 1e6,
+                    parallel.area == serial.area && parallel.perimeter == serial.perimeter ? "" : ", STRIPS DIFFER: " + parallel,
+                    check);
+        }
+    }
+
+    // Helper counting covered unit cells and their exposed sides on the grid of the random rectangles
+    private static Result grid(int n, RTree.Bounds bounds) {
+        int size = 10_200;
+        BitSet covered = new BitSet(size * size);
+        int[] box = new int[4];
+        for (int i = 0; i < n; i++) {
+            bounds.getBounds(i, box);
+            for (int x = box[0]; x < box[2]; x++) {
+                covered.set(x * size + box[1], x * size + box[3]);
+            }
+        }
+        long area = 0;
+        long perimeter = 0;
+        for (int c = covered.nextSetBit(0); c >= 0; c = covered.nextSetBit(c + 1)) {
+            int x = c / size;
+            int y = c % size;
+            area++;
+            perimeter += (x == 0 || !covered.get(c - size) ? 1 : 0) + (x == size - 1 || !covered.get(c + size) ? 1 : 0)
+                    + (y == 0 || !covered.get(c - 1) ? 1 : 0) + (y == size - 1 || !covered.get(c + 1) ? 1 : 0);
+        }
+        return new Result(area, perimeter);
+    }
+}
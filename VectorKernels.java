@@ -0,0 +1,270 @@
+// Importing necessary Java libraries
+import java.util.*;
+import java.util.function.Consumer;
+import jdk.incubator.vector.*;
+
+// Class 'VectorKernels' computing whole lanes of triangles and rectangles at a time with the Vector API.
+// Needs --add-modules jdk.incubator.vector at compile and run time; BatchKernels loads it reflectively.
+// Results match ScalarKernels bit for bit for every int coordinate: triangle areas use long lanes like
+// TriangleBatch.getArea, lengths are squared in double lanes with the same operations as
+// ShapeBatch.squaredDistance, and blocks holding a coordinate outside +/-2^30 (where the flag products
+// could overflow a long) are handed to the exact scalar predicates instead
+class VectorKernels implements BatchKernels {
+    private static final VectorSpecies<Long> LS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DS = DoubleVector.SPECIES_PREFERRED;
+    // Int species with as many lanes as LS, so each int column widens into exactly one long vector
+    private static final VectorSpecies<Integer> IS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LS.vectorBitSize() / 2));
+    private static final int LANES = LS.length();
+    private static final int LIMIT = 1 << 30;
+
+    // Helper widening LANES ints of a column starting at 'i' into long lanes
+    private static LongVector load(int[] column, int i) {
+        return (LongVector) IntVector.fromArray(IS, column, i).convertShape(VectorOperators.I2L, LS, 0);
+    }
+
+    // Helper converting LANES ints of a column starting at 'i' into double lanes; every int is exact
+    // as a double, and so is the difference of two of them
+    private static DoubleVector loadDouble(int[] column, int i) {
+        return (DoubleVector) IntVector.fromArray(IS, column, i).convertShape(VectorOperators.I2D, DS, 0);
+    }
+
+    // Helper checking that every lane of the given columns lies in the range where long products are exact
+    private static boolean inRange(int i, int[]... columns) {
+        for (int[] column : columns) {
+            IntVector v = IntVector.fromArray(IS, column, i);
+            if (v.compare(VectorOperators.GE, LIMIT).or(v.compare(VectorOperators.LT, -LIMIT)).anyTrue())
+                return false;
+        }
+        return true;
+    }
+
+    public void triangleAreas(TriangleBatch b, double[] out) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            LongVector x1 = load(b.x1, i), y1 = load(b.y1, i);
+            LongVector x2 = load(b.x2, i), y2 = load(b.y2, i);
+            LongVector x3 = load(b.x3, i), y3 = load(b.y3, i);
+            // Shoelace formula, lane by lane
+            LongVector twice = x1.mul(y2.sub(y3)).add(x2.mul(y3.sub(y1))).add(x3.mul(y1.sub(y2)));
+            ((DoubleVector) twice.convertShape(VectorOperators.L2D, DS, 0))
+                    .mul(1.0 / 2).lanewise(VectorOperators.ABS).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = b.getArea(i);
+        }
+    }
+
+    public void trianglePerimeters(TriangleBatch b, double[] out) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            DoubleVector x1 = loadDouble(b.x1, i), y1 = loadDouble(b.y1, i);
+            DoubleVector x2 = loadDouble(b.x2, i), y2 = loadDouble(b.y2, i);
+            DoubleVector x3 = loadDouble(b.x3, i), y3 = loadDouble(b.y3, i);
+            DoubleVector side1 = squared(x1.sub(x2), y1.sub(y2)).lanewise(VectorOperators.SQRT);
+            DoubleVector side2 = squared(x1.sub(x3), y1.sub(y3)).lanewise(VectorOperators.SQRT);
+            DoubleVector side3 = squared(x2.sub(x3), y2.sub(y3)).lanewise(VectorOperators.SQRT);
+            side1.add(side2).add(side3).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = b.getPerimeter(i);
+        }
+    }
+
+    public void triangleSquaredSides(TriangleBatch b, double[] side1, double[] side2, double[] side3) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            DoubleVector x1 = loadDouble(b.x1, i), y1 = loadDouble(b.y1, i);
+            DoubleVector x2 = loadDouble(b.x2, i), y2 = loadDouble(b.y2, i);
+            DoubleVector x3 = loadDouble(b.x3, i), y3 = loadDouble(b.y3, i);
+            squared(x1.sub(x2), y1.sub(y2)).intoArray(side1, i);
+            squared(x1.sub(x3), y1.sub(y3)).intoArray(side2, i);
+            squared(x2.sub(x3), y2.sub(y3)).intoArray(side3, i);
+        }
+        for (; i < n; i++) {
+            side1[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x2[i], b.y2[i]);
+            side2[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x3[i], b.y3[i]);
+            side3[i] = ShapeBatch.squaredDistance(b.x2[i], b.y2[i], b.x3[i], b.y3[i]);
+        }
+    }
+
+    public int rightAngled(TriangleBatch b, boolean[] out) {
+        int n = b.size();
+        int count = 0;
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            if (!inRange(i, b.x1, b.y1, b.x2, b.y2, b.x3, b.y3)) {
+                count += ScalarKernels.rightAngled(b, out, i, i + LANES);
+                continue;
+            }
+            LongVector x1 = load(b.x1, i), y1 = load(b.y1, i);
+            LongVector x2 = load(b.x2, i), y2 = load(b.y2, i);
+            LongVector x3 = load(b.x3, i), y3 = load(b.y3, i);
+            // A right angle at a vertex means the dot product of its two edges is zero
+            VectorMask<Long> right = dot(x2.sub(x1), y2.sub(y1), x3.sub(x1), y3.sub(y1)).eq(0)
+                    .or(dot(x1.sub(x2), y1.sub(y2), x3.sub(x2), y3.sub(y2)).eq(0))
+                    .or(dot(x1.sub(x3), y1.sub(y3), x2.sub(x3), y2.sub(y3)).eq(0));
+            right.intoArray(out, i);
+            count += right.trueCount();
+        }
+        return count + ScalarKernels.rightAngled(b, out, i, n);
+    }
+
+    public void rectangleAreas(RectangleBatch b, double[] out) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            DoubleVector x1 = loadDouble(b.x1, i), y1 = loadDouble(b.y1, i);
+            DoubleVector length = squared(x1.sub(loadDouble(b.x2, i)), y1.sub(loadDouble(b.y2, i)))
+                    .lanewise(VectorOperators.SQRT);
+            DoubleVector width = squared(x1.sub(loadDouble(b.x4, i)), y1.sub(loadDouble(b.y4, i)))
+                    .lanewise(VectorOperators.SQRT);
+            length.mul(width).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = b.getArea(i);
+        }
+    }
+
+    public void rectanglePerimeters(RectangleBatch b, double[] out) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            DoubleVector x1 = loadDouble(b.x1, i), y1 = loadDouble(b.y1, i);
+            DoubleVector length = squared(x1.sub(loadDouble(b.x2, i)), y1.sub(loadDouble(b.y2, i)))
+                    .lanewise(VectorOperators.SQRT);
+            DoubleVector width = squared(x1.sub(loadDouble(b.x4, i)), y1.sub(loadDouble(b.y4, i)))
+                    .lanewise(VectorOperators.SQRT);
+            length.add(width).mul(2).intoArray(out, i);
+        }
+        for (; i < n; i++) {
+            out[i] = b.getPerimeter(i);
+        }
+    }
+
+    public void rectangleSquaredSides(RectangleBatch b, double[] length, double[] width) {
+        int n = b.size();
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            DoubleVector x1 = loadDouble(b.x1, i), y1 = loadDouble(b.y1, i);
+            squared(x1.sub(loadDouble(b.x2, i)), y1.sub(loadDouble(b.y2, i))).intoArray(length, i);
+            squared(x1.sub(loadDouble(b.x4, i)), y1.sub(loadDouble(b.y4, i))).intoArray(width, i);
+        }
+        for (; i < n; i++) {
+            length[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x2[i], b.y2[i]);
+            width[i] = ShapeBatch.squaredDistance(b.x1[i], b.y1[i], b.x4[i], b.y4[i]);
+        }
+    }
+
+    public int squares(RectangleBatch b, boolean[] out) {
+        int n = b.size();
+        int count = 0;
+        int i = 0;
+        for (; i < LS.loopBound(n); i += LANES) {
+            if (!inRange(i, b.x1, b.y1, b.x2, b.y2, b.x4, b.y4)) {
+                count += ScalarKernels.squares(b, out, i, i + LANES);
+                continue;
+            }
+            LongVector x1 = load(b.x1, i), y1 = load(b.y1, i);
+            LongVector length = squared(x1.sub(load(b.x2, i)), y1.sub(load(b.y2, i)));
+            LongVector width = squared(x1.sub(load(b.x4, i)), y1.sub(load(b.y4, i)));
+            VectorMask<Long> square = length.eq(width);
+            square.intoArray(out, i);
+            count += square.trueCount();
+        }
+        return count + ScalarKernels.squares(b, out, i, n);
+    }
+
+    private static LongVector squared(LongVector dx, LongVector dy) {
+        return dx.mul(dx).add(dy.mul(dy));
+    }
+
+    // Helper squaring in double lanes as ShapeBatch.squaredDistance does, (dx * dx) + (dy * dy) without
+    // a fused multiply-add, so every lane rounds exactly like the scalar code
+    private static DoubleVector squared(DoubleVector dx, DoubleVector dy) {
+        return dx.mul(dx).add(dy.mul(dy));
+    }
+
+    private static LongVector dot(LongVector ux, LongVector uy, LongVector vx, LongVector vy) {
+        return ux.mul(vx).add(uy.mul(vy));
+    }
+
+    // Entry point comparing every kernel with ScalarKernels, bit for bit, on random shapes and on shapes
+    // with coordinates at the ends of the int range, where squares overflow a long. Sizes leave a tail
+    // after the last full vector so the scalar remainder loops are checked too
+    public static void main(String[] args) {
+        BatchKernels vector = new VectorKernels();
+        BatchKernels scalar = new ScalarKernels();
+        Random random = new Random(42);
+        int[] extremes = { Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -(1 << 30), -1, 0, 1, 1 << 30, Integer.MAX_VALUE };
+        boolean same = true;
+        for (int round = 0; round < 2; round++) {
+            int n = 8 * LANES + 3;
+            TriangleBatch triangles = new TriangleBatch(n);
+            RectangleBatch rectangles = new RectangleBatch(n);
+            for (int i = 0; i < n; i++) {
+                int[][] v = new int[4][2];
+                for (int[] p : v) {
+                    p[0] = round == 0 ? random.nextInt(10_000) : extremes[random.nextInt(extremes.length)];
+                    p[1] = round == 0 ? random.nextInt(10_000) : extremes[random.nextInt(extremes.length)];
+                }
+                triangles.set(i, v);
+                rectangles.set(i, v);
+            }
+            same &= check("triangleAreas", n, k -> k.triangleAreas(triangles, out(k, 0, n)), vector, scalar);
+            same &= check("trianglePerimeters", n, k -> k.trianglePerimeters(triangles, out(k, 0, n)), vector, scalar);
+            same &= check("triangleSquaredSides", n,
+                    k -> k.triangleSquaredSides(triangles, out(k, 0, n), out(k, 1, n), out(k, 2, n)), vector, scalar);
+            same &= check("rectangleAreas", n, k -> k.rectangleAreas(rectangles, out(k, 0, n)), vector, scalar);
+            same &= check("rectanglePerimeters", n, k -> k.rectanglePerimeters(rectangles, out(k, 0, n)), vector, scalar);
+            same &= check("rectangleSquaredSides", n,
+                    k -> k.rectangleSquaredSides(rectangles, out(k, 0, n), out(k, 1, n)), vector, scalar);
+            boolean[] vectorFlags = new boolean[n];
+            boolean[] scalarFlags = new boolean[n];
+            boolean flags = vector.rightAngled(triangles, vectorFlags) == scalar.rightAngled(triangles, scalarFlags)
+                    && Arrays.equals(vectorFlags, scalarFlags)
+                    && vector.squares(rectangles, vectorFlags) == scalar.squares(rectangles, scalarFlags)
+                    && Arrays.equals(vectorFlags, scalarFlags);
+            if (!flags)
+                System.out.println("rightAngled/squares DIFFER");
+            same &= flags;
+            System.out.printf("%s coordinates, %d lanes: %s%n", round == 0 ? "small" : "extreme", LANES,
+                    same ? "vector matches scalar" : "vector DIFFERS from scalar");
+        }
+        if (!same)
+            System.exit(1);
+    }
+
+    // Outputs of the kernel check() is running, per implementation; at most three columns
+    private static final Map<BatchKernels, double[][]> OUTPUTS = new IdentityHashMap<>();
+
+    // Helper returning output column 'c' of length 'n' for kernel 'k'
+    private static double[] out(BatchKernels k, int c, int n) {
+        double[][] columns = OUTPUTS.computeIfAbsent(k, key -> new double[3][]);
+        if (columns[c] == null || columns[c].length != n)
+            columns[c] = new double[n];
+        return columns[c];
+    }
+
+    // Helper running one kernel on both implementations and comparing the raw bits of every output
+    private static boolean check(String name, int n, Consumer<BatchKernels> run,
+            BatchKernels vector, BatchKernels scalar) {
+        OUTPUTS.clear();
+        run.accept(vector);
+        run.accept(scalar);
+        double[][] a = OUTPUTS.get(vector);
+        double[][] b = OUTPUTS.get(scalar);
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; a[c] != null && i < n; i++) {
+                if (Double.doubleToRawLongBits(a[c][i]) != Double.doubleToRawLongBits(b[c][i])) {
+                    System.out.printf("%s DIFFERS at shape %d: vector %s, scalar %s%n", name, i, a[c][i], b[c][i]);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}